@@ -1,5 +1,7 @@
 package A_bilderzeugung;
 
+import java.util.Arrays;
+
 import lib_cgtools.*;
 
 /*
@@ -14,6 +16,16 @@ public class Image {
     private int width;     // Die Breite des Bildes
     private int height;    // Die Höhe des Bildes
 
+    // Seitenpuffer des adaptiven Supersamplings (erst bei Bedarf angelegt)
+    private double[] sums;       // Summe der Farben aller Samples, 3 Werte pro Pixel
+    private int[] sampleCounts;  // Anzahl der Samples pro Pixel
+    private double[] means;      // Mittelwert der Helligkeit der Samples (Welford)
+    private double[] squares;    // Summe der quadrierten Abweichungen vom Mittelwert (Welford)
+    private boolean[] active;    // Pixel, die im nächsten Durchgang weitere Samples bekommen
+
+    // Untere Grenze der Helligkeit für das Abbruchkriterium, damit dunkle Pixel nicht bis max laufen
+    private static final double MIN_BRIGHTNESS = 0.01;
+
     public Image(int width, int height) {
         data = new double[width * height * 3];
         this.width = width;
@@ -71,31 +83,203 @@ public class Image {
     public void supersample(int number, Sampler sampler) {
         for (int i = 0; i != width; i++) { // Iteriert über jedes Pixel im Bild
             for (int j = 0; j != height; j++) { // Iteriert über jedes Pixel im Bild
+                setPixel(i, j, supersamplePixel(i, j, number, sampler));
+            }
+        }
+    }
+
+    /*
+     * Berechnet die gemittelte Farbe eines einzelnen Pixels (i, j) aus n x n Sub-Pixeln.
+     * Wird sowohl vom seriellen supersample als auch vom TileRenderer verwendet, damit
+     * beide Wege exakt dieselbe Rechnung pro Pixel ausführen. Jedes Sub-Pixel zieht seine
+     * Zufallszahlen aus einem eigenen Strom, der nur von Pixel und Sample-Nummer abhängt.
+     * Ist eine SampleSequence aktiv (Random.useSequence), kommen die Zufallszahlen aus ihr und
+     * die Position im Pixel wird nicht zusätzlich über das n x n-Raster geschichtet.
+     */
+    Color supersamplePixel(int i, int j, int number, Sampler sampler) {
+        // Summe der Samples, komponentenweise ohne Zwischenfarben
+        double r = 0;
+        double g = 0;
+        double b = 0;
+
+        // Unterteilt jedes Pixel in n x n Sub-Pixel
+        for (int ii = 0; ii != number; ii++) {
+            for (int jj = 0; jj != number; jj++) {
+                Random.select((long) j * width + i, ii * number + jj); // Zufallsstrom für dieses Sub-Pixel
+                double x;
+                double y;
+                if (Random.getSequence() == null) {
+                    x = i + (ii + Random.random()) / number; // Zufälliger x-Abtastpunkt innerhalb des Sub-Pixels
+                    y = j + (jj + Random.random()) / number; // Zufälliger y-Abtastpunkt innerhalb des Sub-Pixels
+                } else {
+                    // Die Folge verteilt die ersten beiden Dimensionen schon gleichmäßig über alle Samples
+                    x = i + Random.random();
+                    y = j + Random.random();
+                }
+                Color samplerColor = sampler.getColor(x, y);  // Holt die Farbe vom Sampler für den Abtastpunkt
+                r += samplerColor.r();
+                g += samplerColor.g();
+                b += samplerColor.b();
+            }
+        }
+
+        // Durchschnitt der Samples
+        return new Color(r / (number * number), g / (number * number), b / (number * number));
+    }
+
+    /*
+     * Adaptives Supersampling: jedes Pixel bekommt zuerst base Samples. Danach folgen Durchgänge
+     * mit je base weiteren Samples für alle Pixel, deren 95%-Konfidenzintervall der Helligkeit
+     * breiter ist als threshold * Helligkeit (aber mindestens threshold * MIN_BRIGHTNESS), bis
+     * kein Pixel mehr aktiv ist oder alle aktiven max Samples haben. Ruhige Flächen bleiben so bei
+     * base Samples, verrauschte Pixel (weiche Schatten, Kanten) bekommen bis zu max.
+     * - base: Samples pro Durchgang, auch die Mindestanzahl (Zweierpotenz für SobolSequence)
+     * - max: Obergrenze der Samples pro Pixel
+     * - threshold: erlaubter relativer Fehler, z.B. 0.05
+     * Die verbrauchten Samples pro Pixel liefern getSampleCount und writeSampleHeatmap.
+     */
+    public void supersampleAdaptive(int base, int max, double threshold, Sampler sampler) {
+        startAdaptive(base, max, threshold);
+        do {
+            for (int i = 0; i != width; i++) {
+                for (int j = 0; j != height; j++) {
+                    adaptiveSamplePixel(i, j, base, max, sampler);
+                }
+            }
+        } while (markActive(max, threshold));
+    }
 
-                Color averageColor = new Color(0, 0, 0); // Initialisiert die durchschnittliche Farbe als schwarz
-
-                // Unterteilt jedes Pixel in n x n Sub-Pixel
-                for (int ii = 0; ii != number; ii++) {
-                    for (int jj = 0; jj != number; jj++) {
-                        double x = i + (ii + Random.random()) / number; // Zufälliger x-Abtastpunkt innerhalb des Pixels
-                        double y = j + (jj + Random.random()) / number; // Zufälliger y-Abtastpunkt innerhalb des Pixels
-                        Color samplerColor = sampler.getColor(x, y);  // Holt die Farbe vom Sampler für den Abtastpunkt
-                        averageColor = new Color(  // Addiert die Farbe zum Durchschnitt
-                            averageColor.r() + samplerColor.r(),
-                            averageColor.g() + samplerColor.g(),
-                            averageColor.b() + samplerColor.b()
-                        );
+    /*
+     * Prüft die Parameter und legt die Seitenpuffer für adaptives Supersampling an, alle Pixel
+     * sind aktiv. Wird vor dem Rendern aufgerufen, auch vom TileRenderer, bevor die Threads
+     * starten. Ohne Samples pro Durchgang oder ohne positive Schwelle würde das Abtasten nie enden.
+     */
+    void startAdaptive(int base, int max, double threshold) {
+        if (base < 1 || max < base || !(threshold > 0)) {
+            throw new IllegalArgumentException("adaptive sampling needs base >= 1, max >= base and threshold > 0");
+        }
+        sums = new double[width * height * 3];
+        sampleCounts = new int[width * height];
+        means = new double[width * height];
+        squares = new double[width * height];
+        active = new boolean[width * height];
+        Arrays.fill(active, true);
+    }
+
+    /*
+     * Zieht für ein aktives Pixel (i, j) bis zu base weitere Samples und setzt seine Farbe auf
+     * den Mittelwert aller bisherigen. Mittelwert und Varianz der Helligkeit werden mit dem
+     * Verfahren von Welford in den Seitenpuffern mitgeführt.
+     *
+     * Sample n des Pixels benutzt den Zufallsstrom (Pixel, n), das Ergebnis ist also wie bei
+     * supersamplePixel unabhängig vom Thread. Da die Anzahl vorher nicht feststeht, gibt es kein
+     * n x n-Raster; gleichmäßig verteilt werden die Samples mit einer SampleSequence.
+     */
+    void adaptiveSamplePixel(int i, int j, int base, int max, Sampler sampler) {
+        int k = j * width + i;
+        if (!active[k]) {
+            return;
+        }
+        long pixel = k;
+        int n = sampleCounts[k];
+        double mean = means[k];
+        double m2 = squares[k];
+
+        int last = Math.min(n + base, max);
+        for (; n < last; n++) {
+            Random.select(pixel, n);
+            Color c = sampler.getColor(i + Random.random(), j + Random.random());
+            sums[3 * k] += c.r();
+            sums[3 * k + 1] += c.g();
+            sums[3 * k + 2] += c.b();
+
+            double brightness = (c.r() + c.g() + c.b()) / 3;
+            double delta = brightness - mean;
+            mean += delta / (n + 1);
+            m2 += delta * (brightness - mean);
+        }
+
+        sampleCounts[k] = n;
+        means[k] = mean;
+        squares[k] = m2;
+        setPixel(i, j, new Color(sums[3 * k] / n, sums[3 * k + 1] / n, sums[3 * k + 2] / n));
+    }
+
+    /*
+     * Bestimmt nach einem Durchgang die Pixel, die weitere Samples brauchen, und gibt zurück, ob
+     * es noch welche gibt. Ein Pixel bleibt aktiv, wenn es oder eines seiner acht Nachbarn den
+     * Fehler überschreitet: ein Pixel, das eine kleine helle Lichtquelle nur knapp berührt, sieht
+     * sie in seinen ersten Samples oft gar nicht und hält sich sonst fälschlich für rauschfrei.
+     * Wird zwischen den Durchgängen aufgerufen, nie während Pixel gerendert werden.
+     */
+    boolean markActive(int max, double threshold) {
+        boolean[] noisy = new boolean[width * height];
+        for (int k = 0; k != width * height; k++) {
+            int n = sampleCounts[k];
+            double error = n > 1 ? 1.96 * Math.sqrt(squares[k] / (n - 1) / n) : Double.POSITIVE_INFINITY;
+            noisy[k] = error > threshold * Math.max(means[k], MIN_BRIGHTNESS);
+        }
+
+        boolean any = false;
+        for (int j = 0; j != height; j++) {
+            for (int i = 0; i != width; i++) {
+                int k = j * width + i;
+                active[k] = false;
+                if (sampleCounts[k] >= max) {
+                    continue;
+                }
+                for (int y = Math.max(j - 1, 0); y <= Math.min(j + 1, height - 1) && !active[k]; y++) {
+                    for (int x = Math.max(i - 1, 0); x <= Math.min(i + 1, width - 1); x++) {
+                        if (noisy[y * width + x]) {
+                            active[k] = true;
+                            break;
+                        }
                     }
                 }
+                any |= active[k];
+            }
+        }
+        return any;
+    }
 
-                // Setzt die Farbe des Pixels basierend auf dem Durchschnitt der Samples
-                setPixel(i, j, new Color(
-                    averageColor.r() / (number * number),
-                    averageColor.g() / (number * number),
-                    averageColor.b() / (number * number)
-                ));
+    /*
+     * Anzahl der Samples, die das letzte adaptive Supersampling für das Pixel (i, j) verbraucht
+     * hat (0 ohne adaptives Supersampling).
+     */
+    public int getSampleCount(int i, int j) {
+        return sampleCounts == null ? 0 : sampleCounts[j * width + i];
+    }
+
+    /*
+     * Varianz der Helligkeit der einzelnen Samples des Pixels (i, j) beim letzten adaptiven
+     * Supersampling.
+     */
+    public double getVariance(int i, int j) {
+        if (sampleCounts == null || sampleCounts[j * width + i] < 2) {
+            return 0;
+        }
+        return squares[j * width + i] / (sampleCounts[j * width + i] - 1);
+    }
+
+    /*
+     * Schreibt eine Heatmap der verbrauchten Samples: schwarz für keine, über Rot und Gelb bis
+     * Weiß für das Pixel mit den meisten Samples.
+     */
+    public void writeSampleHeatmap(String filename) {
+        int most = 1;
+        if (sampleCounts != null) {
+            for (int count : sampleCounts) {
+                most = Math.max(most, count);
             }
         }
+        double[] heat = new double[width * height * 3];
+        for (int k = 0; k != width * height; k++) {
+            double t = sampleCounts == null ? 0 : (double) sampleCounts[k] / most;
+            heat[3 * k] = Math.min(1, 3 * t);
+            heat[3 * k + 1] = Math.min(1, Math.max(0, 3 * t - 1));
+            heat[3 * k + 2] = Math.max(0, 3 * t - 2);
+        }
+        ImageWriter.write(filename, heat, width, height);
     }
 
     /*
@@ -0,0 +1,143 @@
+package A_bilderzeugung;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import lib_cgtools.*;
+
+/*
+ * Der TileRenderer rendert ein Image parallel. Das Bild wird in quadratische Kacheln (Tiles)
+ * zerlegt, die auf einem ForkJoinPool mit Work-Stealing abgearbeitet werden. Jede Kachel wird
+ * von genau einem Thread berechnet, die Pixel werden direkt in das Image geschrieben.
+ *
+ * Pro Pixel wird dieselbe Rechnung wie in Image.supersample (bzw. supersampleAdaptive)
+ * ausgeführt, daher entsteht das gleiche Bild wie beim seriellen Weg.
+ */
+public class TileRenderer {
+    private int threads;   // Anzahl der Worker-Threads im Pool
+    private int tileSize;  // Kantenlänge einer Kachel in Pixeln
+
+    /*
+     * Erstellt einen TileRenderer mit der angegebenen Anzahl an Threads und Kachelgröße.
+     */
+    public TileRenderer(int threads, int tileSize) {
+        if (threads < 1 || tileSize < 1) {
+            throw new IllegalArgumentException("threads and tileSize must be positive");
+        }
+        this.threads = threads;
+        this.tileSize = tileSize;
+    }
+
+    /*
+     * Erstellt einen TileRenderer mit 32x32 Pixel großen Kacheln.
+     */
+    public TileRenderer(int threads) {
+        this(threads, 32);
+    }
+
+    /*
+     * Erstellt einen TileRenderer, der alle verfügbaren Prozessorkerne nutzt.
+     */
+    public TileRenderer() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /*
+     * Paralleles Gegenstück zu Image.supersample: jedes Pixel wird mit n x n Sub-Pixeln abgetastet.
+     * Die Methode kehrt erst zurück, wenn alle Kacheln fertig gerendert sind.
+     */
+    public void supersample(Image image, int number, Sampler sampler) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            render(pool, image, (i, j) -> image.setPixel(i, j, image.supersamplePixel(i, j, number, sampler)));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /*
+     * Paralleles Gegenstück zu Image.supersampleAdaptive: jedes Pixel bekommt zwischen base und
+     * max Samples, je nach seinem geschätzten Fehler. Jeder Durchgang wird parallel gerendert,
+     * die aktiven Pixel für den nächsten werden dazwischen bestimmt. Alle Durchgänge laufen auf
+     * demselben Pool.
+     */
+    public void supersampleAdaptive(Image image, int base, int max, double threshold, Sampler sampler) {
+        image.startAdaptive(base, max, threshold);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            do {
+                render(pool, image, (i, j) -> image.adaptiveSamplePixel(i, j, base, max, sampler));
+            } while (image.markActive(max, threshold));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Berechnet alle Pixel des Bildes kachelweise auf dem Pool
+    private void render(ForkJoinPool pool, Image image, PixelAction action) {
+        int tilesX = (image.getWidth() + tileSize - 1) / tileSize;
+        int tilesY = (image.getHeight() + tileSize - 1) / tileSize;
+        pool.invoke(new TileTask(image, action, tilesX, 0, tilesX * tilesY));
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    // Berechnet ein einzelnes Pixel und schreibt es in das Image
+    private interface PixelAction {
+        void render(int i, int j);
+    }
+
+    /*
+     * Ein Task bearbeitet einen Bereich [first, last) von Kachel-Indizes. Größere Bereiche
+     * werden halbiert, bis nur noch eine Kachel übrig ist, die dann direkt gerendert wird.
+     * Freie Threads stehlen sich so die noch offenen Hälften. RecursiveAction ist Serializable,
+     * die Tasks werden aber nie serialisiert.
+     */
+    @SuppressWarnings("serial")
+    private class TileTask extends RecursiveAction {
+        private final Image image;
+        private final PixelAction action;
+        private final int tilesX;
+        private final int first;
+        private final int last;
+
+        TileTask(Image image, PixelAction action, int tilesX, int first, int last) {
+            this.image = image;
+            this.action = action;
+            this.tilesX = tilesX;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected void compute() {
+            if (last - first > 1) {
+                int middle = (first + last) >>> 1;
+                invokeAll(new TileTask(image, action, tilesX, first, middle),
+                        new TileTask(image, action, tilesX, middle, last));
+                return;
+            }
+            renderTile(first);
+        }
+
+        // Rendert alle Pixel einer einzelnen Kachel
+        private void renderTile(int tile) {
+            int x0 = (tile % tilesX) * tileSize;
+            int y0 = (tile / tilesX) * tileSize;
+            int x1 = Math.min(x0 + tileSize, image.getWidth());
+            int y1 = Math.min(y0 + tileSize, image.getHeight());
+
+            for (int j = y0; j != y1; j++) {
+                for (int i = x0; i != x1; i++) {
+                    action.render(i, j);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package H_beschleunigung;
+
+import lib_cgtools.*;
+import static lib_cgtools.Vector.*;
+
+/*
+ * Eine affine Transformation als 3x4-Matrix. Die letzte Zeile einer 4x4-Matrix ist bei
+ * Translation, Rotation und Skalierung immer (0 0 0 1) und wird daher nicht gespeichert.
+ *
+ * Gegenüber lib_cgtools.Matrix ist das Verknüpfen (27 statt 64 Multiplikationen) und vor allem
+ * das Invertieren deutlich günstiger: statt der allgemeinen Cofaktor-Inversion genügt die
+ * Inverse des linearen 3x3-Teils. Zusätzlich merkt sich jede Transformation, ob sie die
+ * Einheitsmatrix oder eine reine Verschiebung ist. In diesen häufigen Fällen werden Strahlen,
+ * Punkte und Boxen ohne Matrixrechnung transformiert.
+ *
+ * Affine-Objekte sind unveränderlich.
+ */
+public final class Affine {
+
+    private static final int IDENTITY = 0;     // Einheitsmatrix
+    private static final int TRANSLATION = 1;  // Nur Verschiebung, linearer Teil ist die Einheitsmatrix
+    private static final int GENERAL = 2;      // Beliebige affine Transformation
+
+    public static final Affine identity = new Affine(1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0);
+
+    // Zeilenweise: x' = m00 * x + m01 * y + m02 * z + m03 (entsprechend für y' und z')
+    private final double m00, m01, m02, m03;
+    private final double m10, m11, m12, m13;
+    private final double m20, m21, m22, m23;
+    private final int kind;
+
+    private Affine(double m00, double m01, double m02, double m03,
+            double m10, double m11, double m12, double m13,
+            double m20, double m21, double m22, double m23) {
+        this.m00 = m00;
+        this.m01 = m01;
+        this.m02 = m02;
+        this.m03 = m03;
+        this.m10 = m10;
+        this.m11 = m11;
+        this.m12 = m12;
+        this.m13 = m13;
+        this.m20 = m20;
+        this.m21 = m21;
+        this.m22 = m22;
+        this.m23 = m23;
+
+        boolean linearIdentity = m00 == 1 && m01 == 0 && m02 == 0
+            && m10 == 0 && m11 == 1 && m12 == 0
+            && m20 == 0 && m21 == 0 && m22 == 1;
+        if (!linearIdentity) {
+            kind = GENERAL;
+        } else if (m03 == 0 && m13 == 0 && m23 == 0) {
+            kind = IDENTITY;
+        } else {
+            kind = TRANSLATION;
+        }
+    }
+
+    /*
+     * Übernimmt die oberen drei Zeilen einer 4x4-Matrix. Die Matrix muss affin sein
+     * (keine Projektion).
+     */
+    public static Affine of(Matrix m) {
+        return new Affine(
+            m.element(0, 0), m.element(0, 1), m.element(0, 2), m.element(0, 3),
+            m.element(1, 0), m.element(1, 1), m.element(1, 2), m.element(1, 3),
+            m.element(2, 0), m.element(2, 1), m.element(2, 2), m.element(2, 3));
+    }
+
+    public static Affine translation(double x, double y, double z) {
+        return new Affine(1, 0, 0, x, 0, 1, 0, y, 0, 0, 1, z);
+    }
+
+    public Matrix toMatrix() {
+        return Matrix.affine(m00, m01, m02, m03, m10, m11, m12, m13, m20, m21, m22, m23);
+    }
+
+    public boolean isIdentity() {
+        return kind == IDENTITY;
+    }
+
+    public boolean isTranslation() {
+        return kind != GENERAL;
+    }
+
+    /*
+     * Skalierungsfaktor, wenn der lineare Teil eine gleichmäßige Skalierung s * E mit s > 0 ist
+     * (zusammen mit offset() also nur Verschiebung und Skalierung), sonst NaN.
+     */
+    public double uniformScale() {
+        boolean diagonal = m01 == 0 && m02 == 0 && m10 == 0 && m12 == 0 && m20 == 0 && m21 == 0;
+        return diagonal && m00 > 0 && m00 == m11 && m00 == m22 ? m00 : Double.NaN;
+    }
+
+    // Verschiebungsanteil (letzte Spalte)
+    public Direction offset() {
+        return direction(m03, m13, m23);
+    }
+
+    /*
+     * Verknüpfung this * b: auf einen Punkt wird zuerst b und dann this angewendet.
+     */
+    public Affine multiply(Affine b) {
+        if (b.kind == IDENTITY) {
+            return this;
+        }
+        if (kind == IDENTITY) {
+            return b;
+        }
+        if (kind == TRANSLATION && b.kind == TRANSLATION) {
+            return translation(m03 + b.m03, m13 + b.m13, m23 + b.m23);
+        }
+        return new Affine(
+            m00 * b.m00 + m01 * b.m10 + m02 * b.m20,
+            m00 * b.m01 + m01 * b.m11 + m02 * b.m21,
+            m00 * b.m02 + m01 * b.m12 + m02 * b.m22,
+            m00 * b.m03 + m01 * b.m13 + m02 * b.m23 + m03,
+            m10 * b.m00 + m11 * b.m10 + m12 * b.m20,
+            m10 * b.m01 + m11 * b.m11 + m12 * b.m21,
+            m10 * b.m02 + m11 * b.m12 + m12 * b.m22,
+            m10 * b.m03 + m11 * b.m13 + m12 * b.m23 + m13,
+            m20 * b.m00 + m21 * b.m10 + m22 * b.m20,
+            m20 * b.m01 + m21 * b.m11 + m22 * b.m21,
+            m20 * b.m02 + m21 * b.m12 + m22 * b.m22,
+            m20 * b.m03 + m21 * b.m13 + m22 * b.m23 + m23);
+    }
+
+    /*
+     * Inverse: der lineare Teil A wird über die Adjunkte invertiert, die Verschiebung t wird
+     * zu -A^-1 * t.
+     */
+    public Affine invert() {
+        if (kind == IDENTITY) {
+            return this;
+        }
+        if (kind == TRANSLATION) {
+            return translation(-m03, -m13, -m23);
+        }
+
+        double c00 = m11 * m22 - m12 * m21;
+        double c01 = m02 * m21 - m01 * m22;
+        double c02 = m01 * m12 - m02 * m11;
+        double c10 = m12 * m20 - m10 * m22;
+        double c11 = m00 * m22 - m02 * m20;
+        double c12 = m02 * m10 - m00 * m12;
+        double c20 = m10 * m21 - m11 * m20;
+        double c21 = m01 * m20 - m00 * m21;
+        double c22 = m00 * m11 - m01 * m10;
+        double invDet = 1.0 / (m00 * c00 + m01 * c10 + m02 * c20);
+
+        double i00 = c00 * invDet, i01 = c01 * invDet, i02 = c02 * invDet;
+        double i10 = c10 * invDet, i11 = c11 * invDet, i12 = c12 * invDet;
+        double i20 = c20 * invDet, i21 = c21 * invDet, i22 = c22 * invDet;
+        return new Affine(
+            i00, i01, i02, -(i00 * m03 + i01 * m13 + i02 * m23),
+            i10, i11, i12, -(i10 * m03 + i11 * m13 + i12 * m23),
+            i20, i21, i22, -(i20 * m03 + i21 * m13 + i22 * m23));
+    }
+
+    public Point transform(Point p) {
+        if (kind == IDENTITY) {
+            return p;
+        }
+        if (kind == TRANSLATION) {
+            return point(p.x() + m03, p.y() + m13, p.z() + m23);
+        }
+        return point(
+            m00 * p.x() + m01 * p.y() + m02 * p.z() + m03,
+            m10 * p.x() + m11 * p.y() + m12 * p.z() + m13,
+            m20 * p.x() + m21 * p.y() + m22 * p.z() + m23);
+    }
+
+    public Direction transform(Direction d) {
+        if (kind != GENERAL) {
+            return d;
+        }
+        return direction(
+            m00 * d.x() + m01 * d.y() + m02 * d.z(),
+            m10 * d.x() + m11 * d.y() + m12 * d.z(),
+            m20 * d.x() + m21 * d.y() + m22 * d.z());
+    }
+
+    /*
+     * Multipliziert n mit dem transponierten linearen Teil. Aufgerufen auf der Inversen einer
+     * Transformation ergibt das die transformierte (nicht normierte) Normale.
+     */
+    public Direction transformNormal(Direction n) {
+        if (kind != GENERAL) {
+            return n;
+        }
+        return direction(
+            m00 * n.x() + m10 * n.y() + m20 * n.z(),
+            m01 * n.x() + m11 * n.y() + m21 * n.z(),
+            m02 * n.x() + m12 * n.y() + m22 * n.z());
+    }
+
+    /*
+     * Transformiert Ursprung und Richtung des Strahls in einem Schritt. Bei einer reinen
+     * Verschiebung bleibt die Richtung gleich und ihre vorberechneten Kehrwerte werden
+     * übernommen. Die Richtung wird nicht normiert, damit t gültig bleibt.
+     */
+    public Ray transform(Ray ray) {
+        if (kind == IDENTITY) {
+            return ray;
+        }
+        Point o = ray.origin();
+        if (kind == TRANSLATION) {
+            return ray.withOrigin(point(o.x() + m03, o.y() + m13, o.z() + m23));
+        }
+        Direction d = ray.direction();
+        return new Ray(
+            point(m00 * o.x() + m01 * o.y() + m02 * o.z() + m03,
+                m10 * o.x() + m11 * o.y() + m12 * o.z() + m13,
+                m20 * o.x() + m21 * o.y() + m22 * o.z() + m23),
+            direction(m00 * d.x() + m01 * d.y() + m02 * d.z(),
+                m10 * d.x() + m11 * d.y() + m12 * d.z(),
+                m20 * d.x() + m21 * d.y() + m22 * d.z()),
+            ray.tMin(), ray.tMax());
+    }
+
+    /*
+     * Achsenparallele Box um die transformierte Box (Arvo): der Mittelpunkt wird transformiert,
+     * die halbe Ausdehnung mit den Beträgen des linearen Teils. Das ergibt dieselbe Box wie das
+     * Transformieren aller acht Ecken, aber ohne acht Punkte zu erzeugen.
+     */
+    public BoundingBox transform(BoundingBox box) {
+        if (kind == IDENTITY) {
+            return box;
+        }
+        if (kind == TRANSLATION) {
+            return new BoundingBox(transform(box.min), transform(box.max));
+        }
+        double cx = (box.min.x() + box.max.x()) / 2, ex = (box.max.x() - box.min.x()) / 2;
+        double cy = (box.min.y() + box.max.y()) / 2, ey = (box.max.y() - box.min.y()) / 2;
+        double cz = (box.min.z() + box.max.z()) / 2, ez = (box.max.z() - box.min.z()) / 2;
+
+        double tx = m00 * cx + m01 * cy + m02 * cz + m03;
+        double ty = m10 * cx + m11 * cy + m12 * cz + m13;
+        double tz = m20 * cx + m21 * cy + m22 * cz + m23;
+        double rx = Math.abs(m00) * ex + Math.abs(m01) * ey + Math.abs(m02) * ez;
+        double ry = Math.abs(m10) * ex + Math.abs(m11) * ey + Math.abs(m12) * ez;
+        double rz = Math.abs(m20) * ex + Math.abs(m21) * ey + Math.abs(m22) * ez;
+        return new BoundingBox(point(tx - rx, ty - ry, tz - rz), point(tx + rx, ty + ry, tz + rz));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("(Affine: %.2f %.2f %.2f %.2f | %.2f %.2f %.2f %.2f | %.2f %.2f %.2f %.2f)",
+            m00, m01, m02, m03, m10, m11, m12, m13, m20, m21, m22, m23);
+    }
+}
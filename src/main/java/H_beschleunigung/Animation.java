@@ -0,0 +1,87 @@
+package H_beschleunigung;
+
+import lib_cgtools.*;
+import A_bilderzeugung.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Rendert eine Folge von Posen eines Human als einzelne Bilder.
+ *
+ * Die Szene wird nur einmal kompiliert. Für jedes Bild werden die Gelenkwinkel gesetzt und die
+ * Bounding-Boxen per Refit angepasst (O(n)), danach wird das Bild parallel gerendert. Die Zeiten
+ * für das Aktualisieren der Szene und für das Rendern werden pro Bild festgehalten.
+ */
+public class Animation {
+
+    private Human human;             // Die animierte Figur
+    private Scene scene;             // Die kompilierte Szene, in der die Figur liegt
+    private Camera camera;           // Kamera für alle Bilder
+    private Color background;        // Hintergrundfarbe für den Raytracer
+    private TileRenderer renderer;   // Paralleler Renderer
+
+    private ArrayList<Long> updateTimes = new ArrayList<>(); // Zeit für Pose + Refit pro Bild (ns)
+    private ArrayList<Long> renderTimes = new ArrayList<>(); // Zeit für das Rendern pro Bild (ms)
+
+    /*
+     * scene muss den human enthalten. Ist die Szene noch nicht kompiliert, wird sie hier
+     * einmalig kompiliert.
+     */
+    public Animation(Human human, Scene scene, Camera camera, Color background, TileRenderer renderer) {
+        this.human = human;
+        this.scene = scene.shapes() instanceof FlatBVH ? scene : scene.compile();
+        this.camera = camera;
+        this.background = background;
+        this.renderer = renderer;
+    }
+
+    /*
+     * Rendert für jede Pose ein Bild mit number x number Samples pro Pixel und speichert es unter
+     * filePrefix + "-" + Bildnummer + ".png".
+     */
+    public void render(List<Human.Pose> poses, int number, String filePrefix) {
+        // Der Raytracer liest die Szene bei jedem Strahl, er (und sein LightTree) kann deshalb
+        // für alle Bilder verwendet werden. Der Refit ändert nur die Formen, nicht die Lichter.
+        Raytracer raytracer = new Raytracer(camera, scene, background);
+        for (int frame = 0; frame < poses.size(); frame++) {
+            long startUpdate = System.nanoTime();
+            human.setPose(poses.get(frame));
+            scene.refit();
+            updateTimes.add(System.nanoTime() - startUpdate);
+
+            long startRender = System.currentTimeMillis();
+            Image image = new Image(camera.getWidth(), camera.getHeight());
+            renderer.supersample(image, number, raytracer);
+            renderTimes.add(System.currentTimeMillis() - startRender);
+
+            image.write(String.format("%s-%03d.png", filePrefix, frame));
+        }
+    }
+
+    /*
+     * Erzeugt einen einfachen Laufzyklus: Arme und Beine schwingen gegenläufig, Ellbogen und
+     * Knie beugen sich in der zweiten Hälfte des Schwungs.
+     */
+    public static List<Human.Pose> walkCycle(int frames, double swing) {
+        ArrayList<Human.Pose> poses = new ArrayList<>();
+        for (int frame = 0; frame < frames; frame++) {
+            double phase = 2 * Math.PI * frame / frames;
+            double left = Math.sin(phase) * swing;
+            double right = -left;
+            poses.add(new Human.Pose(
+                right, Math.max(0, right) * 0.5,
+                left, Math.max(0, left) * 0.5,
+                left, right,
+                -Math.max(0, -left), -Math.max(0, -right)));
+        }
+        return poses;
+    }
+
+    public List<Long> getUpdateTimes() {
+        return updateTimes;
+    }
+
+    public List<Long> getRenderTimes() {
+        return renderTimes;
+    }
+}
@@ -0,0 +1,45 @@
+package H_beschleunigung;
+
+import lib_cgtools.*;
+
+/*
+ * Eine Form, die als Lichtquelle direkt gesampelt werden kann (Next-Event Estimation). Von einem
+ * Punkt p aus wird eine Richtung zur Lichtquelle gewählt; die Dichte bezieht sich wie bei den
+ * Materialien auf den Raumwinkel, damit beide Strategien mit Multiple Importance Sampling
+ * kombiniert werden können (siehe Raytracer).
+ *
+ * Umgesetzt von Sphere, DiscXZ, RectXZ und Background. Gesampelt werden sie nur, wenn ihr
+ * Material ein Emitter ist (siehe AreaLights).
+ */
+public interface AreaLight extends Shape {
+
+    public Material getMaterial();
+
+    /*
+     * Wählt mit den Zufallszahlen u1, u2 aus [0, 1] einen Punkt der Lichtquelle, der vom Punkt p
+     * mit der Normalen n aus gesehen wird. null, wenn von p aus nichts gesampelt werden kann
+     * (z.B. p liegt in der Kugel).
+     */
+    public LightSample sample(Point p, Direction n, double u1, double u2);
+
+    /*
+     * Dichte, mit der sample von p aus die Richtung zum Trefferpunkt hit wählt. hit muss auf
+     * dieser Lichtquelle liegen (contains).
+     */
+    public double pdf(Point p, Direction n, Hit hit);
+
+    /*
+     * Liegt der Treffer auf dieser Lichtquelle? Verglichen werden Material und Lage des Punkts,
+     * da ein Hit die getroffene Form nicht kennt.
+     */
+    public boolean contains(Hit hit);
+
+    /*
+     * Erzeugt das Ergebnis von sample für den Punkt im Abstand t in Richtung direction: die
+     * Emission wird wie beim Treffer eines Strahls über hitAt (Texturkoordinaten) bestimmt.
+     */
+    static LightSample emitted(AreaLight light, Point p, Direction direction, double t, double pdf) {
+        Hit hit = light.hitAt(new Ray(p, direction, 0, Double.POSITIVE_INFINITY), t);
+        return new LightSample(direction, t, light.getMaterial().getEmission(direction, hit), pdf);
+    }
+}
@@ -0,0 +1,142 @@
+package H_beschleunigung;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lib_cgtools.*;
+
+/*
+ * Alle Lichtquellen einer Szene, die direkt gesampelt werden (Next-Event Estimation): Formen,
+ * die AreaLight umsetzen und einen Emitter als Material haben. Sie werden beim ersten Zugriff
+ * aus dem Szenengraphen gesammelt, mit allen Transformationen in Weltkoordinaten:
+ *
+ * - Verschiebung und gleichmäßige Skalierung werden wie beim SceneFlattener eingerechnet
+ *   (Shape.bake).
+ * - Lichtquellen unter anderen Transformationen (Drehung, ungleichmäßige Skalierung), in
+ *   Instanzen oder in einem SphereSet werden nicht gesampelt. Sie leuchten trotzdem, ihr Licht
+ *   wird dann nur gefunden, wenn ein reflektierter Strahl sie trifft.
+ *
+ * Formen, die nach dem Erzeugen, aber vor dem ersten Rendern hinzukommen, werden also noch
+ * gefunden. Spätere Änderungen am Szenengraphen (z.B. eine neue Pose) wirken sich erst nach
+ * update() aus, das Scene.refit() aufruft. Die Lichtquelle wird gleichverteilt ausgewählt.
+ */
+public class AreaLights {
+
+    private final Shape root;
+    private volatile List<AreaLight> lights;  // null, solange noch nicht gesammelt wurde
+
+    public AreaLights(Shape root) {
+        this.root = root;
+    }
+
+    /*
+     * Die Wurzel, unter der die Lichtquellen gesammelt werden.
+     */
+    Shape getRoot() {
+        return root;
+    }
+
+    /*
+     * Verwirft die gesammelten Lichtquellen, beim nächsten Zugriff werden sie neu gesammelt.
+     * Nur zwischen zwei Bildern aufrufen, nicht während gerendert wird.
+     */
+    public void update() {
+        lights = null;
+    }
+
+    /*
+     * Sammelt die Lichtquellen unter shape in found ein. toRoot überführt die Koordinaten von
+     * shape in die der Wurzel.
+     */
+    private static void collect(Shape shape, Affine toRoot, List<AreaLight> found) {
+        if (shape instanceof Group group) {
+            Affine combined = toRoot.multiply(group.getTransform());
+            for (Shape s : group.getForms()) {
+                collect(s, combined, found);
+            }
+        } else if (shape instanceof BVHNode || shape instanceof FlatBVH) {
+            ArrayList<Shape> children = new ArrayList<>();
+            FlatBVH.collect(shape, children, children);
+            for (Shape s : children) {
+                collect(s, toRoot, found);
+            }
+        } else if (shape instanceof UniformGrid grid) {
+            for (Shape s : grid.getPrimitives()) {
+                collect(s, toRoot, found);
+            }
+            for (Shape s : grid.getUnbounded()) {
+                collect(s, toRoot, found);
+            }
+        } else if (shape instanceof AreaLight light && light.getMaterial() instanceof Emitter) {
+            AreaLight baked = toRoot(light, toRoot);
+            if (baked != null) {
+                found.add(baked);
+            }
+        }
+    }
+
+    /*
+     * Die Lichtquelle in Koordinaten der Wurzel oder null, wenn sich die Transformation nicht
+     * einrechnen lässt. Der Hintergrund ist unendlich weit entfernt, Verschiebungen ändern an
+     * ihm nichts.
+     */
+    private static AreaLight toRoot(AreaLight light, Affine toRoot) {
+        if (toRoot.isIdentity() || light instanceof Background) {
+            return light;
+        }
+        double scale = toRoot.uniformScale();
+        return Double.isNaN(scale) ? null : (AreaLight) light.bake(scale, toRoot.offset());
+    }
+
+    public boolean isEmpty() {
+        return getLights().isEmpty();
+    }
+
+    /*
+     * Die Lichtquellen in Weltkoordinaten. Beim ersten Aufruf (auch aus mehreren Render-Threads
+     * zugleich) werden sie genau einmal gesammelt.
+     */
+    public List<AreaLight> getLights() {
+        List<AreaLight> result = lights;
+        if (result == null) {
+            synchronized (this) {
+                result = lights;
+                if (result == null) {
+                    ArrayList<AreaLight> found = new ArrayList<>();
+                    collect(root, Affine.identity, found);
+                    lights = result = found;
+                }
+            }
+        }
+        return result;
+    }
+
+    /*
+     * Wählt mit u0 eine Lichtquelle und mit u1, u2 einen Punkt auf ihr, gesehen vom Punkt p mit
+     * der Normalen n. Die Dichte im Ergebnis enthält bereits die Wahrscheinlichkeit, mit der
+     * die Lichtquelle gewählt wurde.
+     */
+    public LightSample sample(Point p, Direction n, double u0, double u1, double u2) {
+        List<AreaLight> lights = getLights();
+        int count = lights.size();
+        LightSample sample = lights.get(Math.min((int) (u0 * count), count - 1)).sample(p, n, u1, u2);
+        if (sample == null) {
+            return null;
+        }
+        return new LightSample(sample.direction(), sample.distance(), sample.radiance(), sample.pdf() / count);
+    }
+
+    /*
+     * Dichte, mit der sample von p aus die Richtung zum Treffer hit wählt, oder 0, wenn der
+     * Treffer auf keiner der Lichtquellen liegt.
+     */
+    public double pdf(Point p, Direction n, Hit hit) {
+        List<AreaLight> lights = getLights();
+        for (AreaLight light : lights) {
+            if (light.contains(hit)) {
+                return light.pdf(p, n, hit) / lights.size();
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,358 @@
+package H_beschleunigung;
+
+import static lib_cgtools.Vector.*;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.IntStream;
+
+/*
+ * Der BVHBuilder baut aus einer Liste von Shapes automatisch eine Hüllkörper-Hierarchie (BVH).
+ * Die Aufteilung erfolgt nach der Surface Area Heuristic (SAH) mit Binning:
+ * Die Mittelpunkte (Centroids) der Shapes werden pro Achse in eine feste Anzahl von Bins
+ * einsortiert. Für jede Grenze zwischen zwei Bins werden die erwarteten Kosten
+ *
+ *     C = C_trav + (A_links * N_links + A_rechts * N_rechts) / A_knoten * C_isect
+ *
+ * berechnet (A = Oberfläche der Box, N = Anzahl Shapes). Die günstigste Grenze gewinnt.
+ * Ist keine Aufteilung billiger als ein Blatt, wird ein Blatt erzeugt.
+ *
+ * Große Szenen werden parallel gebaut: Teilbäume ab einer Mindestgröße laufen als eigene
+ * ForkJoin-Tasks, und in den obersten Ebenen wird zusätzlich das Binning selbst auf mehrere
+ * Threads verteilt. Das Ergebnis ist unabhängig von der Anzahl der Threads.
+ *
+ * Shapes mit unendlicher Ausdehnung (z.B. Background) dürfen nicht übergeben werden.
+ */
+public class BVHBuilder {
+
+    private static final int BINS = 16;              // Anzahl der Bins pro Achse
+    private static final int MAX_LEAF_SIZE = 4;      // Maximale Anzahl Shapes in einem Blatt
+    private static final double COST_TRAVERSAL = 1.0; // Kosten für einen Box-Test
+    private static final double COST_INTERSECT = 1.0; // Kosten für einen Shape-Test
+
+    private static final int PARALLEL_SUBTREE = 4096;   // Ab dieser Größe wird ein Teilbaum als eigener Task gebaut
+    private static final int PARALLEL_BINNING = 65536;  // Ab dieser Größe wird das Binning selbst parallelisiert
+    private static final int BINNING_CHUNK = 16384;     // Anzahl Shapes pro Binning-Task
+
+    private Shape[] shapes;  // Die Shapes, über die gebaut wird
+    private int[] indices;   // Permutation der Shapes, wird beim Bauen umsortiert
+    private double[] lower;  // Minimalpunkte der Shape-Boxen (x, y, z hintereinander)
+    private double[] upper;  // Maximalpunkte der Shape-Boxen
+    private double[] center; // Mittelpunkte der Shape-Boxen
+
+    /*
+     * Baut eine BVH über die gegebenen Shapes und gibt die Wurzel zurück.
+     * Bei einer leeren Liste wird null zurückgegeben.
+     */
+    public static Shape build(List<Shape> shapes) {
+        if (shapes.isEmpty()) {
+            return null;
+        }
+        BVHBuilder builder = new BVHBuilder(shapes);
+        return ForkJoinPool.commonPool().invoke(builder.new BuildTask(0, shapes.size()));
+    }
+
+    /*
+     * Baut eine BVH mit der angegebenen Strategie (SAH oder LBVH).
+     */
+    public static Shape build(List<Shape> shapes, BuildStrategy strategy) {
+        return switch (strategy) {
+            case SAH -> build(shapes);
+            case LBVH -> LBVHBuilder.build(shapes);
+        };
+    }
+
+    private BVHBuilder(List<Shape> list) {
+        int n = list.size();
+        shapes = list.toArray(new Shape[n]);
+        indices = new int[n];
+        lower = new double[3 * n];
+        upper = new double[3 * n];
+        center = new double[3 * n];
+
+        // Boxen und Mittelpunkte einmalig (parallel) vorberechnen, damit beim Bauen nichts allokiert wird
+        IntStream.range(0, n).parallel().forEach(i -> {
+            BoundingBox box = shapes[i].bounds();
+            indices[i] = i;
+            lower[3 * i] = box.min.x();
+            lower[3 * i + 1] = box.min.y();
+            lower[3 * i + 2] = box.min.z();
+            upper[3 * i] = box.max.x();
+            upper[3 * i + 1] = box.max.y();
+            upper[3 * i + 2] = box.max.z();
+            for (int a = 0; a < 3; a++) {
+                center[3 * i + a] = 0.5 * (lower[3 * i + a] + upper[3 * i + a]);
+            }
+        });
+    }
+
+    /*
+     * Baut rekursiv den Teilbaum über die Shapes indices[start, end).
+     */
+    private Shape build(int start, int end) {
+        int n = end - start;
+
+        // Box über alle Shapes und Box über alle Mittelpunkte bestimmen
+        double[] box = emptyBox();
+        double[] centroidBox = emptyBox();
+        for (int k = start; k < end; k++) {
+            int i = indices[k];
+            growBox(box, 0, lower, upper, i);
+            growBox(centroidBox, 0, center, center, i);
+        }
+
+        if (n <= 1) {
+            return leaf(box, start, end);
+        }
+
+        // Alle Shapes für alle drei Achsen gleichzeitig in Bins einsortieren
+        Bins bins = n >= PARALLEL_BINNING
+            ? new BinningTask(start, end, centroidBox).invoke()
+            : binRange(start, end, centroidBox);
+
+        // Beste Aufteilung über alle drei Achsen suchen
+        double bestCost = Double.POSITIVE_INFINITY;
+        int bestAxis = -1;
+        int bestSplit = -1;
+        double[] rightArea = new double[BINS];
+        for (int axis = 0; axis < 3; axis++) {
+            if (centroidBox[3 + axis] - centroidBox[axis] <= 0) {
+                continue; // Alle Mittelpunkte liegen auf dieser Achse übereinander
+            }
+
+            // Von rechts nach links die Flächen der rechten Seiten aufsummieren
+            double[] acc = emptyBox();
+            for (int b = BINS - 1; b > 0; b--) {
+                mergeBox(acc, bins.boxes, bins.boxOffset(axis, b));
+                rightArea[b] = area(acc);
+            }
+
+            // Von links nach rechts die Kosten jeder Grenze berechnen
+            acc = emptyBox();
+            int leftCount = 0;
+            for (int b = 0; b < BINS - 1; b++) {
+                mergeBox(acc, bins.boxes, bins.boxOffset(axis, b));
+                leftCount += bins.counts[axis * BINS + b];
+                int rightCount = n - leftCount;
+                if (leftCount == 0 || rightCount == 0) {
+                    continue;
+                }
+                double cost = area(acc) * leftCount + rightArea[b + 1] * rightCount;
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    bestAxis = axis;
+                    bestSplit = b;
+                }
+            }
+        }
+
+        double leafCost = n * COST_INTERSECT;
+        double splitCost = COST_TRAVERSAL + bestCost / area(box) * COST_INTERSECT;
+
+        int middle;
+        if (bestAxis < 0) {
+            // Keine sinnvolle Aufteilung möglich: Blatt oder einfache Halbierung
+            if (n <= MAX_LEAF_SIZE) {
+                return leaf(box, start, end);
+            }
+            middle = (start + end) >>> 1;
+        } else {
+            if (n <= MAX_LEAF_SIZE && leafCost <= splitCost) {
+                return leaf(box, start, end);
+            }
+            middle = partition(start, end, bestAxis, bestSplit, centroidBox);
+        }
+
+        // Große Teilbäume parallel bauen, kleine direkt im aktuellen Thread
+        Shape left;
+        Shape right;
+        if (n >= PARALLEL_SUBTREE) {
+            BuildTask leftTask = new BuildTask(start, middle);
+            leftTask.fork();
+            right = build(middle, end);
+            left = leftTask.join();
+        } else {
+            left = build(start, middle);
+            right = build(middle, end);
+        }
+        return new BVHNode(toBoundingBox(box), left, right);
+    }
+
+    /*
+     * Sortiert die Shapes indices[start, end) in die Bins aller drei Achsen ein.
+     */
+    private Bins binRange(int start, int end, double[] centroidBox) {
+        Bins bins = new Bins();
+        for (int axis = 0; axis < 3; axis++) {
+            double extent = centroidBox[3 + axis] - centroidBox[axis];
+            if (extent <= 0) {
+                continue;
+            }
+            double scale = BINS / extent;
+            for (int k = start; k < end; k++) {
+                int i = indices[k];
+                int b = binOf(center[3 * i + axis], centroidBox[axis], scale);
+                bins.counts[axis * BINS + b]++;
+                growBox(bins.boxes, bins.boxOffset(axis, b), lower, upper, i);
+            }
+        }
+        return bins;
+    }
+
+    /*
+     * Sortiert indices[start, end) so um, dass alle Shapes links der Bin-Grenze vorne stehen.
+     * Gibt die Position der ersten Shape auf der rechten Seite zurück.
+     */
+    private int partition(int start, int end, int axis, int split, double[] centroidBox) {
+        double scale = BINS / (centroidBox[3 + axis] - centroidBox[axis]);
+        int i = start;
+        int j = end - 1;
+        while (i <= j) {
+            if (binOf(center[3 * indices[i] + axis], centroidBox[axis], scale) <= split) {
+                i++;
+            } else {
+                int tmp = indices[i];
+                indices[i] = indices[j];
+                indices[j] = tmp;
+                j--;
+            }
+        }
+        return i;
+    }
+
+    // Erzeugt ein Blatt über die Shapes indices[start, end)
+    private Shape leaf(double[] box, int start, int end) {
+        Shape[] leafShapes = new Shape[end - start];
+        for (int k = start; k < end; k++) {
+            leafShapes[k - start] = shapes[indices[k]];
+        }
+        return new BVHNode(toBoundingBox(box), leafShapes);
+    }
+
+    private static int binOf(double c, double min, double scale) {
+        return Math.min(BINS - 1, (int) ((c - min) * scale));
+    }
+
+    /*
+     * Task für einen Teilbaum. Die Teilbäume arbeiten auf disjunkten Bereichen von indices.
+     */
+    private class BuildTask extends RecursiveTask<Shape> {
+        private static final long serialVersionUID = 1L;
+        private final int start;
+        private final int end;
+
+        BuildTask(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected Shape compute() {
+            return build(start, end);
+        }
+    }
+
+    /*
+     * Task für paralleles Binning: der Bereich wird in Stücke geteilt, jedes Stück wird in
+     * eigene Bins einsortiert und die Ergebnisse werden anschließend zusammengeführt.
+     */
+    private class BinningTask extends RecursiveTask<Bins> {
+        private static final long serialVersionUID = 1L;
+        private final int start;
+        private final int end;
+        private final double[] centroidBox;
+
+        BinningTask(int start, int end, double[] centroidBox) {
+            this.start = start;
+            this.end = end;
+            this.centroidBox = centroidBox;
+        }
+
+        @Override
+        protected Bins compute() {
+            if (end - start <= BINNING_CHUNK) {
+                return binRange(start, end, centroidBox);
+            }
+            int middle = (start + end) >>> 1;
+            BinningTask leftTask = new BinningTask(start, middle, centroidBox);
+            leftTask.fork();
+            Bins right = new BinningTask(middle, end, centroidBox).compute();
+            Bins left = leftTask.join();
+            left.merge(right);
+            return left;
+        }
+    }
+
+    /*
+     * Anzahl und Box jedes Bins für alle drei Achsen.
+     */
+    private static class Bins {
+        final int[] counts = new int[3 * BINS];
+        final double[] boxes = new double[3 * 6 * BINS];
+
+        Bins() {
+            for (int k = 0; k < 3 * BINS; k++) {
+                resetBox(boxes, 6 * k);
+            }
+        }
+
+        int boxOffset(int axis, int bin) {
+            return 6 * (axis * BINS + bin);
+        }
+
+        void merge(Bins other) {
+            for (int k = 0; k < 3 * BINS; k++) {
+                counts[k] += other.counts[k];
+                for (int a = 0; a < 3; a++) {
+                    boxes[6 * k + a] = Math.min(boxes[6 * k + a], other.boxes[6 * k + a]);
+                    boxes[6 * k + 3 + a] = Math.max(boxes[6 * k + 3 + a], other.boxes[6 * k + 3 + a]);
+                }
+            }
+        }
+    }
+
+    // Boxen werden als double[6] = {minX, minY, minZ, maxX, maxY, maxZ} gespeichert
+
+    private static double[] emptyBox() {
+        double[] box = new double[6];
+        resetBox(box, 0);
+        return box;
+    }
+
+    private static void resetBox(double[] box, int o) {
+        for (int a = 0; a < 3; a++) {
+            box[o + a] = Double.POSITIVE_INFINITY;
+            box[o + 3 + a] = Double.NEGATIVE_INFINITY;
+        }
+    }
+
+    private static void growBox(double[] box, int o, double[] lo, double[] hi, int i) {
+        for (int a = 0; a < 3; a++) {
+            box[o + a] = Math.min(box[o + a], lo[3 * i + a]);
+            box[o + 3 + a] = Math.max(box[o + 3 + a], hi[3 * i + a]);
+        }
+    }
+
+    private static void mergeBox(double[] box, double[] other, int o) {
+        for (int a = 0; a < 3; a++) {
+            box[a] = Math.min(box[a], other[o + a]);
+            box[3 + a] = Math.max(box[3 + a], other[o + 3 + a]);
+        }
+    }
+
+    // Oberfläche einer Box (leere Boxen haben die Fläche 0)
+    private static double area(double[] box) {
+        double dx = box[3] - box[0];
+        double dy = box[4] - box[1];
+        double dz = box[5] - box[2];
+        if (dx < 0 || dy < 0 || dz < 0) {
+            return 0;
+        }
+        return 2 * (dx * dy + dy * dz + dz * dx);
+    }
+
+    private static BoundingBox toBoundingBox(double[] box) {
+        return new BoundingBox(point(box[0], box[1], box[2]), point(box[3], box[4], box[5]));
+    }
+}
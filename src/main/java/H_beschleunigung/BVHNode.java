@@ -0,0 +1,164 @@
+package H_beschleunigung;
+
+/*
+ * Ein Knoten der Hüllkörper-Hierarchie (Bounding Volume Hierarchy, BVH).
+ * Ein innerer Knoten hat genau zwei Kinder (left, right), ein Blatt enthält eine kleine
+ * Liste von Shapes. Jeder Knoten speichert die Bounding-Box über alle Shapes darunter,
+ * sodass ganze Teilbäume mit einem einzigen Box-Test verworfen werden können.
+ *
+ * Die Knoten werden vom BVHBuilder erzeugt und besitzen keine eigene Transformation.
+ */
+public class BVHNode implements Shape, Refittable {
+
+    private BoundingBox boundingBox; // Die Box über alle Shapes in diesem Teilbaum
+    private Shape left;              // Linkes Kind (null bei Blättern)
+    private Shape right;             // Rechtes Kind (null bei Blättern)
+    private Shape[] shapes;          // Shapes eines Blattes (null bei inneren Knoten)
+
+    /*
+     * Erzeugt einen inneren Knoten mit zwei Kindern.
+     */
+    public BVHNode(BoundingBox boundingBox, Shape left, Shape right) {
+        this.boundingBox = boundingBox;
+        this.left = left;
+        this.right = right;
+    }
+
+    /*
+     * Erzeugt ein Blatt mit den gegebenen Shapes.
+     */
+    public BVHNode(BoundingBox boundingBox, Shape[] shapes) {
+        this.boundingBox = boundingBox;
+        this.shapes = shapes;
+    }
+
+    public boolean isLeaf() {
+        return shapes != null;
+    }
+
+    Shape getLeft() {
+        return left;
+    }
+
+    Shape getRight() {
+        return right;
+    }
+
+    Shape[] getShapes() {
+        return shapes;
+    }
+
+    /*
+     * Passt die Box an die aktuellen Boxen der Kinder an, die Aufteilung bleibt erhalten.
+     */
+    @Override
+    public void refit() {
+        if (isLeaf()) {
+            BoundingBox box = BoundingBox.empty;
+            for (Shape s : shapes) {
+                if (s instanceof Refittable r) {
+                    r.refit();
+                }
+                box = box.extend(s.bounds());
+            }
+            boundingBox = box;
+        } else {
+            if (left instanceof Refittable r) {
+                r.refit();
+            }
+            if (right instanceof Refittable r) {
+                r.refit();
+            }
+            boundingBox = left.bounds().extend(right.bounds());
+        }
+    }
+
+    @Override
+    public BoundingBox bounds() {
+        return boundingBox;
+    }
+
+    /*
+     * Schneidet den Strahl mit dem Teilbaum. Trifft der Strahl die Box nicht, wird der
+     * gesamte Teilbaum übersprungen. Sonst wird die nächste Shape gesucht und nur für sie
+     * der vollständige Treffer erzeugt.
+     */
+    @Override
+    public Hit intersect(Ray ray) {
+        return intersect(ray, ray.tMax());
+    }
+
+    @Override
+    public Hit intersect(Ray ray, double tMax) {
+        if (Double.isNaN(boundingBox.entry(ray, tMax))) {
+            return null;
+        }
+        Nearest nearest = Nearest.acquire(ray, tMax);
+        try {
+            findNearest(ray, nearest);
+            return nearest.hit();
+        } finally {
+            nearest.release();
+        }
+    }
+
+    @Override
+    public boolean isAggregate() {
+        return true;
+    }
+
+    /*
+     * Die eigene Box wurde bereits getroffen. Von den beiden Kindern wird das nähere zuerst
+     * besucht, das andere nur, wenn seine Box vor dem inzwischen nächsten Treffer beginnt.
+     */
+    private void findNearest(Ray ray, Nearest nearest) {
+        if (isLeaf()) {
+            for (Shape s : shapes) {
+                nearest.test(s);
+            }
+            return;
+        }
+
+        double leftEntry = left.bounds().entry(ray, nearest.limit());
+        double rightEntry = right.bounds().entry(ray, nearest.limit());
+        if (Double.isNaN(rightEntry) || leftEntry <= rightEntry) {
+            visit(left, leftEntry, ray, nearest);
+            visit(right, rightEntry, ray, nearest);
+        } else {
+            visit(right, rightEntry, ray, nearest);
+            visit(left, leftEntry, ray, nearest);
+        }
+    }
+
+    // Kinder sind entweder weitere Knoten (direkt durchsuchen) oder beliebige Shapes
+    private static void visit(Shape child, double entry, Ray ray, Nearest nearest) {
+        if (!(entry <= nearest.limit())) {
+            return; // Box verfehlt (NaN) oder hinter dem bisher nächsten Treffer
+        }
+        if (child instanceof BVHNode node) {
+            node.findNearest(ray, nearest);
+        } else {
+            nearest.test(child);
+        }
+    }
+
+    /*
+     * Schattentest: bricht ab, sobald irgendeine Shape im Teilbaum den Strahl blockiert.
+     */
+    @Override
+    public boolean occluded(Ray ray) {
+        if (!boundingBox.intersect(ray)) {
+            return false;
+        }
+
+        if (isLeaf()) {
+            for (Shape s : shapes) {
+                if (s.occluded(ray)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return left.occluded(ray) || right.occluded(ray);
+    }
+}
@@ -4,8 +4,11 @@ import lib_cgtools.*;
 import static lib_cgtools.Vector.*;
 
 
-
-public class Background implements Shape {
+/*
+ * Der Hintergrund als unendlich weit entfernte Kugel um die Szene. Mit einem Emitter als Material
+ * ist er eine Umgebungslichtquelle und wird direkt gesampelt (AreaLight).
+ */
+public class Background implements AreaLight {
 
     private Material material;
     
@@ -43,6 +46,51 @@ public class Background implements Shape {
         return new Hit(t, hitPoint, normal, material, 0, 0); // geb den Treffer zurück
     }
 
+    /*
+     * Der Hintergrund liegt bei t = unendlich und wird nur von unbegrenzten Strahlen getroffen.
+     */
+    @Override
+    public double intersectT(Ray ray) {
+        return Double.isFinite(ray.tMax()) ? MISS : Double.POSITIVE_INFINITY;
+    }
+
+    /*
+     * Der Hintergrund blockiert nur Strahlen, die bis ins Unendliche reichen (wie in intersect).
+     */
+    @Override
+    public boolean occluded(Ray ray) {
+        return !Double.isFinite(ray.tMax());
+    }
+
+    /*
+     * Als Lichtquelle: cosinus-gewichtete Richtung um die Normale n, denn der Hintergrund ist in
+     * jeder Richtung zu sehen. Der Schattenstrahl muss dann bis ins Unendliche frei sein.
+     */
+    @Override
+    public LightSample sample(Point p, Direction n, double u1, double u2) {
+        Direction dir = Sampling.cosineHemisphere(n, u1, u2);
+        double pdf = Sampling.cosineHemispherePdf(n, dir);
+        if (pdf == 0) {
+            return null;
+        }
+        Hit hit = intersect(new Ray(p, dir, 0, Double.POSITIVE_INFINITY));
+        return new LightSample(dir, Double.POSITIVE_INFINITY, material.getEmission(dir, hit), pdf);
+    }
+
+    /*
+     * Die Normale eines Treffers auf dem Hintergrund zeigt entgegen der Strahlrichtung.
+     */
+    @Override
+    public double pdf(Point p, Direction n, Hit hit) {
+        return Sampling.cosineHemispherePdf(n, negate(hit.normalV()));
+    }
+
+    @Override
+    public boolean contains(Hit hit) {
+        return hit.material() == material && Double.isInfinite(hit.t());
+    }
+
+    @Override
     public Material getMaterial() {
         return material;
     }
@@ -0,0 +1,14 @@
+package H_beschleunigung;
+
+/*
+ * Legt fest, aus welchen Primitiven Human und Limb aufgebaut werden.
+ *
+ * - BOXES:    Gelenkkugeln und skalierte Quader wie bisher (pro Gliedmaße drei Kugeln und zwei
+ *             Quader in mehreren Transformationsgruppen).
+ * - CAPSULES: Pro Abschnitt einer Gliedmaße eine Kapsel von Gelenk zu Gelenk, der Hals ist ein
+ *             Zylinder. Die Enden der Kapseln ersetzen die Gelenkkugeln.
+ */
+public enum BodyStyle {
+    BOXES,
+    CAPSULES
+}
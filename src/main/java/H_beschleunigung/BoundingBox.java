@@ -86,36 +86,37 @@ public class BoundingBox {
   //
   public boolean intersect(Ray ray) {
     // count_intersections++;
-    if (this.equals(everything))
-      return true;
-    if (this.contains(ray.pointAt(ray.tMin())))
-      return true;
-    if (this.contains(ray.pointAt(ray.tMax())))
-      return true;
-
-    double dix = 1.0 / ray.direction().x();
-    double diy = 1.0 / ray.direction().y();
-    double diz = 1.0 / ray.direction().z();
-
-    double tx1 = (min.x() - ray.origin().x()) * dix;
-    double tx2 = (max.x() - ray.origin().x()) * dix;
-
-    double tmin = Math.min(tx1, tx2);
-    double tmax = Math.max(tx1, tx2);
-
-    double ty1 = (min.y() - ray.origin().y()) * diy;
-    double ty2 = (max.y() - ray.origin().y()) * diy;
-
-    tmin = Math.max(tmin, Math.min(ty1, ty2));
-    tmax = Math.min(tmax, Math.max(ty1, ty2));
-
-    double tz1 = (min.z() - ray.origin().z()) * diz;
-    double tz2 = (max.z() - ray.origin().z()) * diz;
-
-    tmin = Math.max(tmin, Math.min(tz1, tz2));
-    tmax = Math.min(tmax, Math.max(tz1, tz2));
+    return !Double.isNaN(entry(ray, ray.tMax()));
+  }
 
-    return (tmax >= tmin && ray.isValid(tmin));
+  // Distanz, bei der der Strahl die Box betritt, begrenzt auf [ray.tMin(), tMax]. Liegt die Box
+  // nicht in diesem Intervall, wird NaN zurückgegeben. Damit lassen sich Kinder von vorne nach
+  // hinten besuchen und Boxen hinter dem bisher nächsten Treffer überspringen.
+  //
+  // Slab-Test mit den vorberechneten Kehrwerten und Vorzeichen des Strahls: das Vorzeichen
+  // bestimmt, welche Seite zuerst erreicht wird, sodass kein min/max pro Achse nötig ist.
+  // Ergibt eine Achse NaN (Richtung 0 und Ursprung genau auf der Seite), schlagen die
+  // Vergleiche fehl und die Achse schränkt das Intervall nicht ein.
+  public double entry(Ray ray, double tMax) {
+    double near = ray.tMin();
+    double far = tMax;
+
+    double t0 = ((ray.signX == 0 ? min.x() : max.x()) - ray.origin().x()) * ray.invX;
+    double t1 = ((ray.signX == 0 ? max.x() : min.x()) - ray.origin().x()) * ray.invX;
+    near = t0 > near ? t0 : near;
+    far = t1 < far ? t1 : far;
+
+    t0 = ((ray.signY == 0 ? min.y() : max.y()) - ray.origin().y()) * ray.invY;
+    t1 = ((ray.signY == 0 ? max.y() : min.y()) - ray.origin().y()) * ray.invY;
+    near = t0 > near ? t0 : near;
+    far = t1 < far ? t1 : far;
+
+    t0 = ((ray.signZ == 0 ? min.z() : max.z()) - ray.origin().z()) * ray.invZ;
+    t1 = ((ray.signZ == 0 ? max.z() : min.z()) - ray.origin().z()) * ray.invZ;
+    near = t0 > near ? t0 : near;
+    far = t1 < far ? t1 : far;
+
+    return near <= far ? near : Double.NaN;
   }
 
   public Direction size() {
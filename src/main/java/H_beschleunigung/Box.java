@@ -0,0 +1,133 @@
+package H_beschleunigung;
+
+import lib_cgtools.*;
+import static lib_cgtools.Vector.*;
+
+/*
+ * Ein Quader als eigenes Primitiv. Im lokalen Koordinatensystem ist er achsenparallel und wird
+ * mit einem einzigen Slab-Test geschnitten; gedreht oder skaliert wird er wie alle anderen
+ * Formen über die umgebende Group (orientierter Quader).
+ *
+ * Gegenüber dem früheren Cube aus sechs transformierten RectXZ entfallen pro Strahl sechs
+ * Strahl-Transformationen, sechs Ebenentests und sechs Rücktransformationen der Normalen.
+ * Die Normale wird aus der getroffenen Seite bestimmt und zeigt immer nach außen. Die
+ * Texturkoordinaten laufen auf jeder Seite von 0 bis 1 (wie bei den Seiten des Cube).
+ */
+public class Box implements Shape {
+
+    private Point min;          // Ecke mit den kleinsten Koordinaten
+    private Point max;          // Ecke mit den größten Koordinaten
+    private Material material;
+    private BoundingBox boundingBox;
+
+    public Box(Point min, Point max, Material material) {
+        this.min = min;
+        this.max = max;
+        this.material = material;
+        this.boundingBox = new BoundingBox(min, max);
+    }
+
+    /*
+     * Würfel mit denselben Maßen wie Cube: in x und z um den Ursprung zentriert, in y von
+     * -size bis 0 (die Oberseite liegt in der XZ-Ebene).
+     */
+    public static Box cube(double size, Material material) {
+        return new Box(point(-size / 2, -size, -size / 2), point(size / 2, 0, size / 2), material);
+    }
+
+    @Override
+    public BoundingBox bounds() {
+        return boundingBox;
+    }
+
+    /*
+     * Verschieben und gleichmäßiges Skalieren ändern nur die beiden Ecken.
+     */
+    @Override
+    public Shape bake(double scale, Direction offset) {
+        return new Box(add(multiply(scale, min), offset), add(multiply(scale, max), offset), material);
+    }
+
+    @Override
+    public Hit intersect(Ray ray) {
+        double t = intersectT(ray);
+        return Double.isNaN(t) ? null : hitAt(ray, t);
+    }
+
+    /*
+     * Slab-Test mit den vorberechneten Kehrwerten des Strahls. Liegt der Eintrittspunkt vor
+     * tMin (Ursprung im Quader), zählt der Austrittspunkt.
+     */
+    @Override
+    public double intersectT(Ray ray) {
+        double near = Double.NEGATIVE_INFINITY;
+        double far = Double.POSITIVE_INFINITY;
+
+        double t0 = ((ray.signX == 0 ? min.x() : max.x()) - ray.origin().x()) * ray.invX;
+        double t1 = ((ray.signX == 0 ? max.x() : min.x()) - ray.origin().x()) * ray.invX;
+        near = t0 > near ? t0 : near;
+        far = t1 < far ? t1 : far;
+
+        t0 = ((ray.signY == 0 ? min.y() : max.y()) - ray.origin().y()) * ray.invY;
+        t1 = ((ray.signY == 0 ? max.y() : min.y()) - ray.origin().y()) * ray.invY;
+        near = t0 > near ? t0 : near;
+        far = t1 < far ? t1 : far;
+
+        t0 = ((ray.signZ == 0 ? min.z() : max.z()) - ray.origin().z()) * ray.invZ;
+        t1 = ((ray.signZ == 0 ? max.z() : min.z()) - ray.origin().z()) * ray.invZ;
+        near = t0 > near ? t0 : near;
+        far = t1 < far ? t1 : far;
+
+        if (near > far) {
+            return MISS;
+        }
+        if (ray.isValid(near)) {
+            return near;
+        }
+        return ray.isValid(far) ? far : MISS;
+    }
+
+    /*
+     * Die getroffene Seite ist die, zu der der Trefferpunkt (relativ zur Ausdehnung) den
+     * kleinsten Abstand hat. fx, fy, fz sind die Koordinaten im Quader von 0 bis 1.
+     */
+    @Override
+    public Hit hitAt(Ray ray, double t) {
+        double px = ray.origin().x() + t * ray.direction().x();
+        double py = ray.origin().y() + t * ray.direction().y();
+        double pz = ray.origin().z() + t * ray.direction().z();
+
+        double fx = (px - min.x()) / (max.x() - min.x());
+        double fy = (py - min.y()) / (max.y() - min.y());
+        double fz = (pz - min.z()) / (max.z() - min.z());
+
+        double dx = Math.min(fx, 1 - fx);
+        double dy = Math.min(fy, 1 - fy);
+        double dz = Math.min(fz, 1 - fz);
+
+        Direction normal;
+        double u, v;
+        if (dy <= dx && dy <= dz) {
+            // Ober- bzw. Unterseite
+            normal = fy > 0.5 ? direction(0, 1, 0) : direction(0, -1, 0);
+            u = fx;
+            v = fy > 0.5 ? 1 - fz : fz;
+        } else if (dx <= dz) {
+            // Linke bzw. rechte Seite
+            normal = fx > 0.5 ? direction(1, 0, 0) : direction(-1, 0, 0);
+            u = fx > 0.5 ? 1 - fy : fy;
+            v = 1 - fz;
+        } else {
+            // Vorder- bzw. Rückseite
+            normal = fz > 0.5 ? direction(0, 0, 1) : direction(0, 0, -1);
+            u = fx;
+            v = fz > 0.5 ? fy : 1 - fy;
+        }
+        return new Hit(t, point(px, py, pz), normal, material, u, v);
+    }
+
+    @Override
+    public boolean occluded(Ray ray) {
+        return !Double.isNaN(intersectT(ray));
+    }
+}
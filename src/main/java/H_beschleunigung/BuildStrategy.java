@@ -0,0 +1,13 @@
+package H_beschleunigung;
+
+/*
+ * Legt fest, wie eine Hüllkörper-Hierarchie gebaut wird.
+ *
+ * - SAH:  BVHBuilder mit Surface Area Heuristic. Langsamer zu bauen, dafür schnellere Strahltests.
+ * - LBVH: LBVHBuilder über sortierte Morton-Codes. Sehr schneller Aufbau (z.B. für jedes Bild
+ *         einer Animation neu), dafür etwas schlechtere Bäume.
+ */
+public enum BuildStrategy {
+    SAH,
+    LBVH
+}
@@ -1,10 +1,8 @@
 package H_beschleunigung;
 
-import static lib_cgtools.Vector.normalize;
-
-import lib_cgtools.Direction;
 import lib_cgtools.Matrix;
 import lib_cgtools.Point;
+import lib_cgtools.Vec3;
 
 
 
@@ -14,12 +12,14 @@ public class Camera {
     private int width; // Lochkamera Sichthöhe
     private int height; //Lochkamera Sichtbreite
     private Matrix viewMatrix;
+    private Point transformedOrigin; // Position der Kamera in der Szene (wird einmal berechnet)
 
     public Camera(double alpha, int width, int height, Matrix viewMatrix) {
         this.alpha = alpha;
         this.width = width;
         this.height = height;
         this.viewMatrix = viewMatrix;
+        this.transformedOrigin = Matrix.multiply(viewMatrix, new Point(0,0,0));
     }
 
     /*
@@ -34,18 +34,16 @@ public class Camera {
      * ein Strahl wird zurückgegeben vom Ursprung 0, der normalisierte Richtungsvektor und der Strahl der von 0 -> unendlich gehen kann
      */
     public Ray generateRay(double x, double y) { 
-        Point origin = new Point(0,0,0);
-        
         double xDirection = x - width / 2.0;
         double yDirection = - (y - height / 2.0);
         double zDirection = - ((width / 2.0) / Math.tan(alpha / 2.0));
-        Direction localDirection = normalize(new Direction(xDirection, yDirection, zDirection));
+        double length = Math.sqrt(xDirection * xDirection + yDirection * yDirection + zDirection * zDirection);
 
-        //Transformation 
-        Direction transformDirection = Matrix.multiply(viewMatrix, localDirection);
-        Point transformedOrigin = Matrix.multiply(viewMatrix, origin);
+        //Transformation (komponentenweise, nur die Richtung des Strahls wird als Objekt erzeugt)
+        Vec3 transformed = Matrix.transformDirection(viewMatrix,
+            xDirection / length, yDirection / length, zDirection / length, new Vec3());
 
-        return new Ray(transformedOrigin, transformDirection, 0.0, Double.POSITIVE_INFINITY);
+        return new Ray(transformedOrigin, transformed.toDirection(), 0.0, Double.POSITIVE_INFINITY);
       }
 
     public double getAlpha() {
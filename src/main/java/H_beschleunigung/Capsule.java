@@ -0,0 +1,175 @@
+package H_beschleunigung;
+
+import lib_cgtools.*;
+import static lib_cgtools.Vector.*;
+
+/*
+ * Eine Kapsel: alle Punkte mit Abstand radius zur Strecke von a nach b, also ein Zylinder mit
+ * zwei Halbkugeln als Enden. Ersetzt in Limb die Kombination aus Gelenkkugel, skaliertem Quader
+ * und zweiter Kugel durch ein einziges Primitiv.
+ *
+ * Geschnitten wird analytisch: der Mantel über eine quadratische Gleichung im Abstand zur Achse,
+ * die Enden als Kugeln um a und b. Die Richtung des Strahls muss nicht normiert sein (Strahlen
+ * aus Group sind es nicht). Die Bounding-Box ist die kleinstmögliche achsenparallele Box.
+ *
+ * Texturkoordinaten: u ist der Winkel um die Achse, v läuft entlang der Achse von 0 (a) bis 1 (b).
+ */
+public class Capsule implements Shape {
+
+    private Point a;            // Mittelpunkt des ersten Endes
+    private Point b;            // Mittelpunkt des zweiten Endes
+    private double radius;
+    private Material material;
+    private BoundingBox boundingBox;
+
+    // Achse b - a, ihre quadrierte Länge und zwei dazu senkrechte Einheitsvektoren (für u)
+    private final double ax, ay, az, axisLength2;
+    private final Direction e1, e2;
+
+    public Capsule(Point a, Point b, double radius, Material material) {
+        this.a = a;
+        this.b = b;
+        this.radius = radius;
+        this.material = material;
+
+        ax = b.x() - a.x();
+        ay = b.y() - a.y();
+        az = b.z() - a.z();
+        axisLength2 = ax * ax + ay * ay + az * az;
+        Direction w = normalize(direction(ax, ay, az));
+        e1 = perpendicular(w);
+        e2 = crossProduct(w, e1);
+
+        boundingBox = new BoundingBox(
+            point(Math.min(a.x(), b.x()) - radius, Math.min(a.y(), b.y()) - radius, Math.min(a.z(), b.z()) - radius),
+            point(Math.max(a.x(), b.x()) + radius, Math.max(a.y(), b.y()) + radius, Math.max(a.z(), b.z()) + radius));
+    }
+
+    /*
+     * Ein Einheitsvektor senkrecht zu w. Es wird mit der Achse gekreuzt, zu der w am wenigsten
+     * parallel ist.
+     */
+    static Direction perpendicular(Direction w) {
+        Direction helper = Math.abs(w.x()) < 0.9 ? direction(1, 0, 0) : direction(0, 1, 0);
+        return normalize(crossProduct(helper, w));
+    }
+
+    @Override
+    public BoundingBox bounds() {
+        return boundingBox;
+    }
+
+    /*
+     * Verschieben und gleichmäßiges Skalieren ändern nur die Endpunkte und den Radius.
+     */
+    @Override
+    public Shape bake(double scale, Direction offset) {
+        return new Capsule(add(multiply(scale, a), offset), add(multiply(scale, b), offset),
+            scale * radius, material);
+    }
+
+    @Override
+    public Hit intersect(Ray ray) {
+        double t = intersectT(ray);
+        return Double.isNaN(t) ? null : hitAt(ray, t);
+    }
+
+    /*
+     * Kleinster gültiger Schnittpunkt aus Mantel und beiden Enden. Beim Mantel zählen nur
+     * Punkte zwischen a und b, bei den Kugeln nur die äußeren Hälften. Dadurch funktioniert
+     * das auch für Strahlen, die in der Kapsel starten.
+     */
+    @Override
+    public double intersectT(Ray ray) {
+        double ox = ray.origin().x() - a.x();
+        double oy = ray.origin().y() - a.y();
+        double oz = ray.origin().z() - a.z();
+        double dx = ray.direction().x();
+        double dy = ray.direction().y();
+        double dz = ray.direction().z();
+
+        double dd = dx * dx + dy * dy + dz * dz;
+        double od = ox * dx + oy * dy + oz * dz;
+        double oo = ox * ox + oy * oy + oz * oz;
+        double axisD = ax * dx + ay * dy + az * dz;  // Achse · Richtung
+        double axisO = ax * ox + ay * oy + az * oz;  // Achse · Ursprung
+        double r2 = radius * radius;
+
+        double best = MISS;
+
+        // Mantel: quadratische Gleichung für den Abstand zur Achse (Anteile längs der Achse entfernt)
+        double qa = dd - axisD * axisD / axisLength2;
+        double qb = od - axisO * axisD / axisLength2;
+        double qc = oo - axisO * axisO / axisLength2 - r2;
+        double disc = qb * qb - qa * qc;
+        if (qa > 0 && disc >= 0) {
+            double root = Math.sqrt(disc);
+            best = body(ray, best, (-qb - root) / qa, axisO, axisD);
+            best = body(ray, best, (-qb + root) / qa, axisO, axisD);
+        }
+
+        // Halbkugel um a (nur hinter a, y <= 0)
+        best = cap(ray, best, ox, oy, oz, dx, dy, dz, dd, r2, axisO, axisD, false);
+
+        // Halbkugel um b (nur hinter b, y >= |b - a|^2)
+        best = cap(ray, best, ox - ax, oy - ay, oz - az, dx, dy, dz, dd, r2, axisO, axisD, true);
+        return best;
+    }
+
+    private double cap(Ray ray, double best, double ox, double oy, double oz,
+            double dx, double dy, double dz, double dd, double r2, double axisO, double axisD, boolean end) {
+        double hb = ox * dx + oy * dy + oz * dz;
+        double hc = ox * ox + oy * oy + oz * oz - r2;
+        double disc = hb * hb - dd * hc;
+        if (disc < 0) {
+            return best;
+        }
+        double root = Math.sqrt(disc);
+        double t0 = (-hb - root) / dd;
+        double t1 = (-hb + root) / dd;
+        if (end ? axisO + t0 * axisD >= axisLength2 : axisO + t0 * axisD <= 0) {
+            best = nearer(ray, best, t0);
+        }
+        if (end ? axisO + t1 * axisD >= axisLength2 : axisO + t1 * axisD <= 0) {
+            best = nearer(ray, best, t1);
+        }
+        return best;
+    }
+
+    // Schnittpunkt mit dem Mantel, zählt nur zwischen a und b
+    private double body(Ray ray, double best, double t, double axisO, double axisD) {
+        double y = axisO + t * axisD;
+        return y > 0 && y < axisLength2 ? nearer(ray, best, t) : best;
+    }
+
+    // t, falls gültig und näher als best, sonst best
+    static double nearer(Ray ray, double best, double t) {
+        return ray.isValid(t) && !(t >= best) ? t : best;
+    }
+
+    /*
+     * Die Normale zeigt vom nächsten Punkt auf der Achse (auf die Strecke begrenzt) zum
+     * Trefferpunkt.
+     */
+    @Override
+    public Hit hitAt(Ray ray, double t) {
+        double px = ray.origin().x() + t * ray.direction().x();
+        double py = ray.origin().y() + t * ray.direction().y();
+        double pz = ray.origin().z() + t * ray.direction().z();
+
+        double s = ((px - a.x()) * ax + (py - a.y()) * ay + (pz - a.z()) * az) / axisLength2;
+        s = Math.max(0, Math.min(1, s));
+        Direction normal = direction(
+            (px - a.x() - s * ax) / radius,
+            (py - a.y() - s * ay) / radius,
+            (pz - a.z() - s * az) / radius);
+
+        double u = (Math.atan2(dotProduct(normal, e2), dotProduct(normal, e1)) + Math.PI) / (2 * Math.PI);
+        return new Hit(t, point(px, py, pz), normal, material, u, s);
+    }
+
+    @Override
+    public boolean occluded(Ray ray) {
+        return !Double.isNaN(intersectT(ray));
+    }
+}
@@ -0,0 +1,160 @@
+package H_beschleunigung;
+
+import lib_cgtools.*;
+import static lib_cgtools.Vector.*;
+
+/*
+ * Ein geschlossener Zylinder mit beliebiger Achse von a nach b und zwei ebenen Deckeln.
+ *
+ * Der Mantel wird wie bei Capsule über den Abstand zur Achse geschnitten, die Deckel als
+ * Ebenen senkrecht zur Achse. Die Bounding-Box ist eng: in Richtung einer Koordinatenachse
+ * ragt der Deckel um radius * sqrt(1 - w_i^2) über die Endpunkte hinaus (w ist die normierte
+ * Achse), bei einem senkrechten Zylinder also gar nicht.
+ *
+ * Texturkoordinaten: u ist der Winkel um die Achse, v läuft auf dem Mantel von 0 (a) bis 1 (b).
+ * Auf den Deckeln ist v der Abstand zur Achse relativ zum Radius.
+ */
+public class Cylinder implements Shape {
+
+    private Point a;            // Mittelpunkt des ersten Deckels
+    private Point b;            // Mittelpunkt des zweiten Deckels
+    private double radius;
+    private Material material;
+    private BoundingBox boundingBox;
+
+    // Achse b - a, ihre quadrierte Länge, die normierte Achse w und zwei Einheitsvektoren senkrecht dazu
+    private final double ax, ay, az, axisLength2;
+    private final Direction w, e1, e2;
+
+    public Cylinder(Point a, Point b, double radius, Material material) {
+        this.a = a;
+        this.b = b;
+        this.radius = radius;
+        this.material = material;
+
+        ax = b.x() - a.x();
+        ay = b.y() - a.y();
+        az = b.z() - a.z();
+        axisLength2 = ax * ax + ay * ay + az * az;
+        w = normalize(direction(ax, ay, az));
+        e1 = Capsule.perpendicular(w);
+        e2 = crossProduct(w, e1);
+
+        double ex = radius * Math.sqrt(Math.max(0, 1 - w.x() * w.x()));
+        double ey = radius * Math.sqrt(Math.max(0, 1 - w.y() * w.y()));
+        double ez = radius * Math.sqrt(Math.max(0, 1 - w.z() * w.z()));
+        boundingBox = new BoundingBox(
+            point(Math.min(a.x(), b.x()) - ex, Math.min(a.y(), b.y()) - ey, Math.min(a.z(), b.z()) - ez),
+            point(Math.max(a.x(), b.x()) + ex, Math.max(a.y(), b.y()) + ey, Math.max(a.z(), b.z()) + ez));
+    }
+
+    @Override
+    public BoundingBox bounds() {
+        return boundingBox;
+    }
+
+    /*
+     * Verschieben und gleichmäßiges Skalieren ändern nur die Endpunkte und den Radius.
+     */
+    @Override
+    public Shape bake(double scale, Direction offset) {
+        return new Cylinder(add(multiply(scale, a), offset), add(multiply(scale, b), offset),
+            scale * radius, material);
+    }
+
+    @Override
+    public Hit intersect(Ray ray) {
+        double t = intersectT(ray);
+        return Double.isNaN(t) ? null : hitAt(ray, t);
+    }
+
+    /*
+     * Kleinster gültiger Schnittpunkt aus Mantel (nur zwischen den Deckeln) und den beiden
+     * Deckeln (nur innerhalb des Radius).
+     */
+    @Override
+    public double intersectT(Ray ray) {
+        double ox = ray.origin().x() - a.x();
+        double oy = ray.origin().y() - a.y();
+        double oz = ray.origin().z() - a.z();
+        double dx = ray.direction().x();
+        double dy = ray.direction().y();
+        double dz = ray.direction().z();
+
+        double dd = dx * dx + dy * dy + dz * dz;
+        double od = ox * dx + oy * dy + oz * dz;
+        double oo = ox * ox + oy * oy + oz * oz;
+        double axisD = ax * dx + ay * dy + az * dz;  // Achse · Richtung
+        double axisO = ax * ox + ay * oy + az * oz;  // Achse · Ursprung
+        double r2 = radius * radius;
+
+        double best = MISS;
+
+        // Mantel
+        double qa = dd - axisD * axisD / axisLength2;
+        double qb = od - axisO * axisD / axisLength2;
+        double qc = oo - axisO * axisO / axisLength2 - r2;
+        double disc = qb * qb - qa * qc;
+        if (qa > 0 && disc >= 0) {
+            double root = Math.sqrt(disc);
+            best = body(ray, best, (-qb - root) / qa, axisO, axisD);
+            best = body(ray, best, (-qb + root) / qa, axisO, axisD);
+        }
+
+        // Deckel: Ebenen bei y = 0 (a) und y = |b - a|^2 (b)
+        if (axisD != 0) {
+            best = lid(ray, best, -axisO / axisD, qa, qb, qc, r2);
+            best = lid(ray, best, (axisLength2 - axisO) / axisD, qa, qb, qc, r2);
+        }
+        return best;
+    }
+
+    // Schnittpunkt mit dem Mantel, zählt nur zwischen a und b
+    private double body(Ray ray, double best, double t, double axisO, double axisD) {
+        double y = axisO + t * axisD;
+        return y > 0 && y < axisLength2 ? Capsule.nearer(ray, best, t) : best;
+    }
+
+    /*
+     * Schnittpunkt mit einer Deckelebene. Der quadrierte Abstand zur Achse ist bei t gerade
+     * qa * t^2 + 2 * qb * t + qc + r^2 (dieselben Koeffizienten wie beim Mantel).
+     */
+    private static double lid(Ray ray, double best, double t, double qa, double qb, double qc, double r2) {
+        double distance2 = qa * t * t + 2 * qb * t + qc + r2;
+        return distance2 <= r2 ? Capsule.nearer(ray, best, t) : best;
+    }
+
+    /*
+     * Auf dem Mantel zeigt die Normale von der Achse zum Trefferpunkt, auf den Deckeln in
+     * Richtung der Achse nach außen.
+     */
+    @Override
+    public Hit hitAt(Ray ray, double t) {
+        double px = ray.origin().x() + t * ray.direction().x();
+        double py = ray.origin().y() + t * ray.direction().y();
+        double pz = ray.origin().z() + t * ray.direction().z();
+
+        double s = ((px - a.x()) * ax + (py - a.y()) * ay + (pz - a.z()) * az) / axisLength2;
+        double rx = px - a.x() - s * ax;
+        double ry = py - a.y() - s * ay;
+        double rz = pz - a.z() - s * az;
+        double distance = Math.sqrt(rx * rx + ry * ry + rz * rz);
+        double u = (Math.atan2(rx * e2.x() + ry * e2.y() + rz * e2.z(),
+            rx * e1.x() + ry * e1.y() + rz * e1.z()) + Math.PI) / (2 * Math.PI);
+
+        // Auf welcher Fläche der Punkt liegt, entscheidet der relative Abstand zu Mantel und Deckel
+        double toLid = Math.min(s, 1 - s) * Math.sqrt(axisLength2);
+        double toBody = radius - distance;
+        if (toLid < toBody) {
+            Direction normal = s < 0.5 ? negate(w) : w;
+            return new Hit(t, point(px, py, pz), normal, material, u, distance / radius);
+        }
+        Direction normal = direction(rx / radius, ry / radius, rz / radius);
+        return new Hit(t, point(px, py, pz), normal, material, u, s);
+    }
+
+    @Override
+    public boolean occluded(Ray ray) {
+        return !Double.isNaN(intersectT(ray));
+    }
+}
@@ -15,34 +15,19 @@ public record Diffuse(Sampler albedo, Sampler emission) implements Material {
 
     /*
      * Berechnet die Reflexionsrichtung eines einfallenden Strahls. 
-     * Für diffuse Materialien wird die Reflexion zufällig in alle Richtungen
-     * verteilt, unter der Voraussetzung, dass sie in Richtung der normalen
-     * Oberfläche reflektiert wird.
+     * Für diffuse Materialien wird die Richtung cosinus-gewichtet in der Halbkugel um die
+     * Normale gewählt (Sampling.cosineHemisphere). Das entspricht genau der Verteilung, mit der
+     * eine ideal diffuse Oberfläche Licht reflektiert: BRDF * cos / Dichte ergibt gerade die
+     * Albedo, daher ist getReflectionFraction einfach die Albedo.
+     * 
+     * Es werden immer genau zwei Zufallszahlen gezogen, ohne Verwerfen und ohne Rekursion.
      * 
      * Der Eingangsparameter `to_viewer` repräsentiert die Richtung des Betrachters
      * und `hit` enthält die Informationen zum Punkt des Auftreffens des Strahls auf der Oberfläche.
      */
     @Override
     public Direction getReflectionDirection(Direction to_viewer, Hit hit) {
-
-        // Erzeugt eine zufällige Richtung innerhalb des Einheitswürfels (zwischen -1 und 1 für jede Komponente)
-        Direction randomDirection = new Direction(
-            ((random() * 2) - 1),  // zufälliger Wert zwischen -1 und 1 für x
-            ((random() * 2) - 1),  // zufälliger Wert zwischen -1 und 1 für y
-            ((random() * 2) - 1)   // zufälliger Wert zwischen -1 und 1 für z
-        );
-
-        // Wenn die Länge der zufälligen Richtung kleiner als 1 ist, berechnen wir die Reflexion erneut.
-        // Dies könnte helfen, Richtungen zu vermeiden, die zu nah an der Mitte liegen, und könnte ein
-        // besseres Sampling der möglichen Richtungen gewährleisten.
-        if (length(randomDirection) < 1) {
-            return getReflectionDirection(to_viewer, hit);  // Rekursiver Aufruf, um die Reflexion neu zu berechnen.
-        }
-
-        // Berechnet die endgültige Reflexionsrichtung als Normalenrichtung plus die zufällige Richtung.
-        // `hit.normalV()` stellt die Oberflächen-Normale am Treffpunkt dar.
-        // Die Richtung wird normalisiert, um sie zu einer Einheitsrichtung zu machen.
-        return normalize(add(randomDirection, hit.normalV()));  // Reflexion = zufällige Richtung + normale Richtung
+        return Sampling.cosineHemisphere(hit.normalV(), random(), random());
     }
 
     /*
@@ -58,6 +43,25 @@ public record Diffuse(Sampler albedo, Sampler emission) implements Material {
         return albedo.getColor(hit.u(), hit.v());
     }
 
+    /*
+     * Für das direkte Sampeln von Lichtquellen: BRDF (Albedo / pi) mal Cosinus zur Normalen.
+     * Richtungen unter der Oberfläche werden von getReflectionDirection nie gewählt und
+     * liefern deshalb auch hier schwarz.
+     */
+    @Override
+    public Color evaluateReflection(Direction to_viewer, Direction to_light, Hit hit) {
+        double cos = dotProduct(hit.normalV(), to_light);
+        return cos > 0 ? multiply(cos / Math.PI, albedo.getColor(hit.u(), hit.v())) : black;
+    }
+
+    /*
+     * Dichte von getReflectionDirection: cos / pi.
+     */
+    @Override
+    public double reflectionPdf(Direction to_viewer, Direction direction, Hit hit) {
+        return Sampling.cosineHemispherePdf(hit.normalV(), direction);
+    }
+
     /*
      * Berechnet die Emission des Materials. Diffuse Materialien können auch Licht abstrahlen,
      * zum Beispiel für Materialien, die selbst leuchten.
@@ -13,6 +13,7 @@ public class DirectionalLight implements DirectLight {
     
     private Direction lightDirection;  // Richtung, in die das Licht abstrahlt
     private Color lightColor;  // Farbe des Lichts
+    private Direction toSource;  // Richtung zur Lichtquelle (negiert und normalisiert)
 
     /*
      * Konstruktor für die DirectionalLight-Klasse.
@@ -21,6 +22,7 @@ public class DirectionalLight implements DirectLight {
     public DirectionalLight(Direction lightDirection, Color lightColor) {
         this.lightDirection = lightDirection;  // Richtung des Lichts
         this.lightColor = lightColor;  // Farbe des Lichts
+        this.toSource = normalize(negate(lightDirection));  // Wird für jeden Treffer gebraucht, daher einmal berechnen
     }
     
     /*
@@ -30,7 +32,7 @@ public class DirectionalLight implements DirectLight {
      */
     @Override
     public Direction directionToSource(Point position) {
-        return normalize(negate(lightDirection));  // Negieren und Normalisieren der Lichtquelle
+        return toSource;  // Negierte und normalisierte Lichtrichtung
     }
 
     /*
@@ -57,8 +59,7 @@ public class DirectionalLight implements DirectLight {
 
         // Wenn der Strahl auf ein Objekt trifft, bedeutet das, dass es Schatten wirft
         // und die Lichtquelle nicht sichtbar ist
-        Hit shadowHit = shapes.intersect(ray);  // Überprüft, ob der Strahl mit einem Objekt kollidiert
-        return shadowHit == null;  // Kein Treffer bedeutet, dass das Licht sichtbar ist
+        return !shapes.occluded(ray);  // Kein Blocker bedeutet, dass das Licht sichtbar ist
     }
 
     /*
@@ -7,8 +7,9 @@ import static lib_cgtools.Vector.*;
  * Diese Klasse repräsentiert eine Scheibe auf der XZ-Ebene, die mit einem gegebenen Punkt als Anker, 
  * einem Radius und einem Material definiert ist. Sie implementiert die `Shape`-Schnittstelle und bietet
  * Funktionen zur Berechnung von Treffern und der Begrenzung der Form.
+ * Mit einem Emitter als Material wird sie als Lichtquelle direkt gesampelt (AreaLight).
  */
-public class DiscXZ implements Shape {
+public class DiscXZ implements AreaLight {
 
     private Point anchor;    // Der Ankerpunkt der Scheibe (der Mittelpunkt)
     private double radius;   // Der Radius der Scheibe
@@ -37,6 +38,14 @@ public class DiscXZ implements Shape {
         boundingBox = new BoundingBox(p_min, p_max);
     }
 
+    /*
+     * Verschieben und gleichmäßiges Skalieren ändern nur Ankerpunkt und Radius.
+     */
+    @Override
+    public Shape bake(double scale, Direction offset) {
+        return new DiscXZ(add(multiply(scale, anchor), offset), scale * radius, material);
+    }
+
     /*
      * Gibt die Bounding-Box der Scheibe zurück, um schnelle Kollisionserkennung zu ermöglichen.
      */
@@ -52,7 +61,15 @@ public class DiscXZ implements Shape {
      */
     @Override
     public Hit intersect(Ray ray) {
+        double t = intersectT(ray);
+        return Double.isNaN(t) ? null : hitAt(ray, t);
+    }
 
+    /*
+     * Nur der Strahlparameter: Schnitt mit der Ebene und Test gegen den Radius.
+     */
+    @Override
+    public double intersectT(Ray ray) {
         // Berechnet den Parameter t, bei dem der Strahl die Scheibe trifft.
         // Hier wird die Gleichung der Ebene benutzt: (P - P0) • N = 0, wobei P der Punkt auf der Scheibe ist
         // und P0 der Ankerpunkt der Scheibe. N ist die Normale der Scheibe.
@@ -60,28 +77,92 @@ public class DiscXZ implements Shape {
         
         // Wenn t ungültig ist, gibt es keinen Treffer
         if (!ray.isValid(t)) {
-            return null;
+            return MISS;
         }
-        
-        // Berechnet den Treffpunkt des Strahls auf der Ebene der Scheibe
-        Point hitPoint = ray.pointAt(t);
-        
-        // Berechnet den Vektor von der Mitte der Scheibe zum Treffpunkt
-        Direction vectorLength = subtract(anchor, hitPoint);
+
+        // Vektor von der Mitte der Scheibe zum Treffpunkt (komponentenweise)
+        double rx = ray.origin().x() + t * ray.direction().x() - anchor.x();
+        double ry = ray.origin().y() + t * ray.direction().y() - anchor.y();
+        double rz = ray.origin().z() + t * ray.direction().z() - anchor.z();
 
         // Wenn der Treffpunkt außerhalb des Scheibenradius liegt, gibt es keinen Treffer
-        if (length(vectorLength) > radius) {
-            return null; // Der Punkt ist außerhalb des Kreises
+        if (Math.sqrt(rx * rx + ry * ry + rz * rz) > radius) {
+            return MISS; // Der Punkt ist außerhalb des Kreises
         }
+        return t;
+    }
+
+    /*
+     * Erzeugt den Treffer mit Treffpunkt und Texturkoordinaten für den Strahlparameter t.
+     */
+    @Override
+    public Hit hitAt(Ray ray, double t) {
+        double px = ray.origin().x() + t * ray.direction().x();
+        double py = ray.origin().y() + t * ray.direction().y();
+        double pz = ray.origin().z() + t * ray.direction().z();
 
-        // Berechnet die Richtungsvektoren in Bezug auf den Ankerpunkt
-        Direction rDirection = subtract(hitPoint, anchor);
-        
         // Berechnet die Texturkoordinaten u und v für den Treffpunkt
-        double u = (rDirection.x() + radius) / (radius + radius);
-        double v = 1.0 - ((rDirection.z() + radius) / ((radius + radius)));
-        
+        double u = (px - anchor.x() + radius) / (radius + radius);
+        double v = 1.0 - ((pz - anchor.z() + radius) / ((radius + radius)));
+
         // Gibt den Treffer (Hit) mit dem Treffzeitpunkt, Treffpunkt, Normale, Material und Texturkoordinaten zurück
-        return new Hit(t, hitPoint, normal, material, u, v);
+        return new Hit(t, point(px, py, pz), normal, material, u, v);
+    }
+
+    /*
+     * Schattentest ohne Hit-Objekt: Ebenenschnitt und Abstand zum Mittelpunkt werden
+     * direkt mit den Koordinaten berechnet.
+     */
+    @Override
+    public boolean occluded(Ray ray) {
+        double t = (anchor.y() - ray.origin().y()) / ray.direction().y();
+        if (!ray.isValid(t)) {
+            return false;
+        }
+        double dx = ray.origin().x() + t * ray.direction().x() - anchor.x();
+        double dz = ray.origin().z() + t * ray.direction().z() - anchor.z();
+        return dx * dx + dz * dz <= radius * radius;
+    }
+
+    /*
+     * Als Lichtquelle: gleichverteilter Punkt auf der Scheibe (Radius sqrt(u1)). Die Dichte
+     * bezogen auf den Raumwinkel ist Abstand^2 / (|cos| * Fläche), beide Seiten leuchten.
+     */
+    @Override
+    public LightSample sample(Point p, Direction n, double u1, double u2) {
+        double r = radius * Math.sqrt(u1);
+        double phi = 2 * Math.PI * u2;
+        Direction toLight = subtract(point(anchor.x() + r * Math.cos(phi), anchor.y(), anchor.z() + r * Math.sin(phi)), p);
+        double distance = length(toLight);
+        Direction dir = divide(toLight, distance);
+        double pdf = pdf(distance * distance, dir.y());
+        return pdf == 0 ? null : AreaLight.emitted(this, p, dir, distance, pdf);
+    }
+
+    @Override
+    public double pdf(Point p, Direction n, Hit hit) {
+        Direction toLight = subtract(hit.hit(), p);
+        double distance2 = squaredLength(toLight);
+        return pdf(distance2, toLight.y() / Math.sqrt(distance2));
+    }
+
+    // Dichte für einen Punkt im quadrierten Abstand distance2, cos ist der Winkel zur Normalen
+    private double pdf(double distance2, double cos) {
+        cos = Math.abs(cos);
+        return cos < 1e-9 ? 0 : distance2 / (cos * Math.PI * radius * radius);
+    }
+
+    @Override
+    public boolean contains(Hit hit) {
+        double dx = hit.hit().x() - anchor.x();
+        double dz = hit.hit().z() - anchor.z();
+        return hit.material() == material
+            && Math.abs(hit.hit().y() - anchor.y()) <= 1e-6 * (1 + radius)
+            && dx * dx + dz * dz <= radius * radius * (1 + 1e-6);
+    }
+
+    @Override
+    public Material getMaterial() {
+        return material;
     }
 }
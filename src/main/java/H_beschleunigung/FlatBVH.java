@@ -0,0 +1,340 @@
+package H_beschleunigung;
+
+import static lib_cgtools.Vector.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Die FlatBVH ist die kompilierte Form einer Szene. Die Hierarchie aus Gruppen und BVH-Knoten
+ * wird in zusammenhängende Arrays überführt:
+ *
+ * - bounds: pro Knoten 6 doubles {minX, minY, minZ, maxX, maxY, maxZ}
+ * - nodes:  pro Knoten 2 ints. Innerer Knoten: {Index des rechten Kindes, 0}, das linke Kind
+ *           liegt immer direkt hinter dem Knoten. Blatt: {Offset in primitives, Anzahl}.
+ * - primitives: die Shapes in der Reihenfolge der Blätter
+ *
+ * Gruppen ohne Transformation und bestehende BVH-Knoten werden aufgelöst, sodass bei der
+ * Traversierung nur noch Primitive (Kugeln, Scheiben, ...) geschnitten werden. Gruppen mit
+ * Transformation und Instanzen bleiben als ein Primitiv erhalten. Die Traversierung nutzt einen expliziten
+ * Stack pro Thread (TraversalStack) und besucht die Kinder von vorne nach hinten.
+ */
+public class FlatBVH implements Shape, Refittable {
+
+    private double[] bounds;     // Boxen aller Knoten
+    private int[] nodes;         // Kinder bzw. Blatt-Bereiche aller Knoten
+    private Shape[] primitives;  // Primitive in Blatt-Reihenfolge
+    private Shape[] unbounded;   // Shapes ohne endliche Box (z.B. Background), werden einzeln getestet
+    private int nodeCount;       // Anzahl der belegten Knoten
+    private BoundingBox boundingBox;
+
+    /*
+     * Kompiliert die Hierarchie unter root in eine flache BVH (SAH).
+     */
+    public FlatBVH(Shape root) {
+        this(root, BuildStrategy.SAH);
+    }
+
+    /*
+     * Kompiliert die Hierarchie unter root in eine flache BVH mit der angegebenen Strategie.
+     */
+    public FlatBVH(Shape root, BuildStrategy strategy) {
+        ArrayList<Shape> bounded = new ArrayList<>();
+        ArrayList<Shape> infinite = new ArrayList<>();
+        collect(root, bounded, infinite);
+        unbounded = infinite.toArray(new Shape[0]);
+
+        Shape tree = BVHBuilder.build(bounded, strategy);
+        if (tree == null) {
+            bounds = new double[0];
+            nodes = new int[0];
+            primitives = new Shape[0];
+            boundingBox = extendUnbounded(BoundingBox.empty);
+            return;
+        }
+
+        // Obergrenze: ein Binärbaum mit n Blättern hat höchstens 2n - 1 Knoten
+        int capacity = 2 * bounded.size() - 1;
+        bounds = new double[6 * capacity];
+        nodes = new int[2 * capacity];
+        primitives = new Shape[bounded.size()];
+        flatten(tree, new int[1]);
+        boundingBox = extendUnbounded(tree.bounds());
+    }
+
+    private BoundingBox extendUnbounded(BoundingBox box) {
+        for (Shape s : unbounded) {
+            box = box.extend(s.bounds());
+        }
+        return box;
+    }
+
+    /*
+     * Sammelt rekursiv alle Primitive unter shape ein. Gruppen ohne Transformation und
+     * BVH-Knoten werden aufgelöst, alles andere wird als Primitiv übernommen.
+     */
+    static void collect(Shape shape, List<Shape> bounded, List<Shape> infinite) {
+        if (shape instanceof Group group && group.isIdentity()) {
+            for (Shape s : group.getForms()) {
+                collect(s, bounded, infinite);
+            }
+        } else if (shape instanceof BVHNode node) {
+            if (node.isLeaf()) {
+                for (Shape s : node.getShapes()) {
+                    collect(s, bounded, infinite);
+                }
+            } else {
+                collect(node.getLeft(), bounded, infinite);
+                collect(node.getRight(), bounded, infinite);
+            }
+        } else if (shape instanceof FlatBVH flat) {
+            for (Shape s : flat.primitives) {
+                collect(s, bounded, infinite);
+            }
+            for (Shape s : flat.unbounded) {
+                collect(s, bounded, infinite);
+            }
+        } else if (Group.isFinite(shape.bounds())) {
+            bounded.add(shape);
+        } else {
+            infinite.add(shape);
+        }
+    }
+
+    /*
+     * Schreibt den Teilbaum in die Arrays (Tiefensuche, linkes Kind direkt hinter dem Knoten).
+     * primitiveCount[0] zählt die bereits geschriebenen Primitive.
+     */
+    private int flatten(Shape shape, int[] primitiveCount) {
+        int index = nodeCount++;
+        BoundingBox box = shape.bounds();
+        bounds[6 * index] = box.min.x();
+        bounds[6 * index + 1] = box.min.y();
+        bounds[6 * index + 2] = box.min.z();
+        bounds[6 * index + 3] = box.max.x();
+        bounds[6 * index + 4] = box.max.y();
+        bounds[6 * index + 5] = box.max.z();
+
+        BVHNode node = (BVHNode) shape;
+        if (node.isLeaf()) {
+            nodes[2 * index] = primitiveCount[0];
+            nodes[2 * index + 1] = node.getShapes().length;
+            for (Shape s : node.getShapes()) {
+                primitives[primitiveCount[0]++] = s;
+            }
+        } else {
+            flatten(node.getLeft(), primitiveCount);
+            nodes[2 * index] = flatten(node.getRight(), primitiveCount);
+            nodes[2 * index + 1] = 0;
+        }
+        return index;
+    }
+
+    /*
+     * Passt die Boxen an, nachdem sich Transformationen unterhalb der Primitive geändert haben
+     * (z.B. die Gelenke eines Human). Da Kinder immer hinter ihrem Elternknoten liegen, reicht
+     * ein Durchlauf rückwärts über das Array. Die Aufteilung bleibt gleich, bei großen
+     * Bewegungen sollte die Szene daher neu kompiliert werden (z.B. mit BuildStrategy.LBVH).
+     */
+    @Override
+    public void refit() {
+        for (Shape s : primitives) {
+            if (s instanceof Refittable r) {
+                r.refit();
+            }
+        }
+        for (Shape s : unbounded) {
+            if (s instanceof Refittable r) {
+                r.refit();
+            }
+        }
+
+        for (int index = nodeCount - 1; index >= 0; index--) {
+            int o = 6 * index;
+            int count = nodes[2 * index + 1];
+            if (count > 0) {
+                int first = nodes[2 * index];
+                Arrays.fill(bounds, o, o + 3, Double.POSITIVE_INFINITY);
+                Arrays.fill(bounds, o + 3, o + 6, Double.NEGATIVE_INFINITY);
+                for (int k = first; k < first + count; k++) {
+                    BoundingBox box = primitives[k].bounds();
+                    bounds[o] = Math.min(bounds[o], box.min.x());
+                    bounds[o + 1] = Math.min(bounds[o + 1], box.min.y());
+                    bounds[o + 2] = Math.min(bounds[o + 2], box.min.z());
+                    bounds[o + 3] = Math.max(bounds[o + 3], box.max.x());
+                    bounds[o + 4] = Math.max(bounds[o + 4], box.max.y());
+                    bounds[o + 5] = Math.max(bounds[o + 5], box.max.z());
+                }
+            } else {
+                int left = 6 * (index + 1);
+                int right = 6 * nodes[2 * index];
+                for (int a = 0; a < 3; a++) {
+                    bounds[o + a] = Math.min(bounds[left + a], bounds[right + a]);
+                    bounds[o + 3 + a] = Math.max(bounds[left + 3 + a], bounds[right + 3 + a]);
+                }
+            }
+        }
+
+        BoundingBox box = BoundingBox.empty;
+        if (nodeCount > 0) {
+            box = new BoundingBox(point(bounds[0], bounds[1], bounds[2]), point(bounds[3], bounds[4], bounds[5]));
+        }
+        boundingBox = extendUnbounded(box);
+    }
+
+    @Override
+    public BoundingBox bounds() {
+        return boundingBox;
+    }
+
+    /*
+     * Nächster Treffer: Die Knoten werden iterativ mit einem Stack besucht, das nähere Kind
+     * zuerst. Knoten, deren Box erst hinter dem bisher besten Treffer beginnt, werden
+     * übersprungen. Für die Primitive wird nur der Strahlparameter bestimmt, der vollständige
+     * Treffer entsteht einmal am Ende.
+     */
+    @Override
+    public Hit intersect(Ray ray) {
+        return intersect(ray, ray.tMax());
+    }
+
+    @Override
+    public Hit intersect(Ray ray, double tMax) {
+        Nearest nearest = Nearest.acquire(ray, tMax);
+        try {
+            findNearest(ray, nearest);
+            return nearest.hit();
+        } finally {
+            nearest.release();
+        }
+    }
+
+    @Override
+    public boolean isAggregate() {
+        return true;
+    }
+
+    private void findNearest(Ray ray, Nearest nearest) {
+        for (Shape s : unbounded) {
+            nearest.test(s);
+        }
+        if (nodeCount == 0) {
+            return;
+        }
+
+        double rootEntry = boxEntry(0, ray, nearest.limit());
+        if (Double.isNaN(rootEntry)) {
+            return;
+        }
+
+        TraversalStack stack = TraversalStack.current();
+        int base = stack.top;
+        stack.push(0, rootEntry);
+        while (stack.top > base) {
+            int node = stack.pop();
+            if (stack.entry() > nearest.limit()) {
+                continue; // Box beginnt erst hinter dem inzwischen gefundenen Treffer
+            }
+            int count = nodes[2 * node + 1];
+            if (count > 0) {
+                int first = nodes[2 * node];
+                for (int k = first; k < first + count; k++) {
+                    nearest.test(primitives[k]);
+                }
+                continue;
+            }
+
+            // Beide Kinder testen und das nähere zuletzt auf den Stack legen, damit es zuerst
+            // besucht wird. Kinder, deren Box nicht getroffen wird, kommen gar nicht auf den Stack.
+            int left = node + 1;
+            int right = nodes[2 * node];
+            double leftEntry = boxEntry(left, ray, nearest.limit());
+            double rightEntry = boxEntry(right, ray, nearest.limit());
+            boolean leftFirst = Double.isNaN(rightEntry) || leftEntry <= rightEntry;
+            int near = leftFirst ? left : right, far = leftFirst ? right : left;
+            double nearEntry = leftFirst ? leftEntry : rightEntry, farEntry = leftFirst ? rightEntry : leftEntry;
+            if (!Double.isNaN(farEntry)) {
+                stack.push(far, farEntry);
+            }
+            if (!Double.isNaN(nearEntry)) {
+                stack.push(near, nearEntry);
+            }
+        }
+    }
+
+    /*
+     * Schattentest: gleiche Traversierung, aber Abbruch beim ersten blockierenden Primitiv.
+     */
+    @Override
+    public boolean occluded(Ray ray) {
+        for (Shape s : unbounded) {
+            if (s.occluded(ray)) {
+                return true;
+            }
+        }
+        if (nodeCount == 0) {
+            return false;
+        }
+
+        TraversalStack stack = TraversalStack.current();
+        int base = stack.top;
+        stack.push(0);
+        while (stack.top > base) {
+            int node = stack.pop();
+            if (Double.isNaN(boxEntry(node, ray, ray.tMax()))) {
+                continue;
+            }
+            int count = nodes[2 * node + 1];
+            if (count > 0) {
+                int first = nodes[2 * node];
+                for (int k = first; k < first + count; k++) {
+                    if (primitives[k].occluded(ray)) {
+                        stack.top = base; // Stack für eventuell äußere Traversierungen aufräumen
+                        return true;
+                    }
+                }
+            } else {
+                stack.push(nodes[2 * node]);
+                stack.push(node + 1);
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Slab-Test direkt auf dem bounds-Array: Distanz, bei der der Strahl die Box im Intervall
+     * [tMin, tMax] betritt, oder NaN, wenn er sie dort nicht trifft. Wie BoundingBox.entry wählt
+     * er die Seiten über die Vorzeichen des Strahls (Offset 0 = min, 3 = max).
+     */
+    private double boxEntry(int node, Ray ray, double tMax) {
+        int o = 6 * node;
+        double near = ray.tMin();
+        double far = tMax;
+
+        double t0 = (bounds[o + 3 * ray.signX] - ray.origin().x()) * ray.invX;
+        double t1 = (bounds[o + 3 - 3 * ray.signX] - ray.origin().x()) * ray.invX;
+        near = t0 > near ? t0 : near;
+        far = t1 < far ? t1 : far;
+
+        t0 = (bounds[o + 1 + 3 * ray.signY] - ray.origin().y()) * ray.invY;
+        t1 = (bounds[o + 4 - 3 * ray.signY] - ray.origin().y()) * ray.invY;
+        near = t0 > near ? t0 : near;
+        far = t1 < far ? t1 : far;
+
+        t0 = (bounds[o + 2 + 3 * ray.signZ] - ray.origin().z()) * ray.invZ;
+        t1 = (bounds[o + 5 - 3 * ray.signZ] - ray.origin().z()) * ray.invZ;
+        near = t0 > near ? t0 : near;
+        far = t1 < far ? t1 : far;
+
+        return near <= far ? near : Double.NaN;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getPrimitiveCount() {
+        return primitives.length + unbounded.length;
+    }
+}
@@ -8,24 +8,32 @@ import static lib_cgtools.Vector.*;
  * Diese Klasse stellt eine Gruppe von Formen dar, die gemeinsam transformiert und auf Kollisionen überprüft werden.
  * Jede Form in der Gruppe wird durch eine Transformation beeinflusst, die auf den Strahl und die Form angewendet wird.
  */
-public class Group implements Shape {
+public class Group implements Shape, Refittable {
 
     private ArrayList<Shape> forms;             // Eine Liste von Formen, die zur Gruppe gehören
-    private Matrix matrix;                      // Die Transformation der Gruppe
-    private Matrix inverseMatrix;               // Die Inverse der Transformationsmatrix
-    private Matrix transposedInverseMatrix;     // Die transponierte Inverse der Transformationsmatrix
-    private BoundingBox boundingBox;           // Die Bounding-Box der Gruppe, die die gesamte Gruppe umschließt
+    private Affine transform;                   // Die Transformation der Gruppe
+    private Affine inverse;                     // Die Inverse (auch für die Normalen)
+    private BoundingBox boundingBox;           // Die Bounding-Box der Gruppe, die die gesamte Gruppe umschließt (lokale Koordinaten)
+    private BoundingBox transformedBoundingBox; // Die Bounding-Box im Koordinatensystem der übergeordneten Gruppe
 
     /*
      * Konstruktor, der eine neue Gruppe mit einer Transformationsmatrix erstellt.
-     * Initialisiert die Liste der Formen und berechnet die Inverse und transponierte Inverse der Matrix.
+     * Die Matrix muss affin sein, sie wird intern als Affine gespeichert.
      */
     public Group(Matrix matrix) {
+        this(Affine.of(matrix));
+    }
+
+    /*
+     * Konstruktor mit einer affinen Transformation. Initialisiert die Liste der Formen und
+     * berechnet die Inverse.
+     */
+    public Group(Affine transform) {
         this.forms = new ArrayList<>();
-        this.matrix = matrix;
-        this.inverseMatrix = Matrix.invert(matrix);
-        this.transposedInverseMatrix = Matrix.transpose(this.inverseMatrix);
+        this.transform = transform;
+        this.inverse = transform.invert();
         this.boundingBox = BoundingBox.empty; // Anfangs hat die Gruppe eine leere Bounding-Box
+        this.transformedBoundingBox = BoundingBox.empty;
     }
 
     /*
@@ -34,68 +42,198 @@ public class Group implements Shape {
     public void add(Shape shape) {
         forms.add(shape);  // Fügt die Form zur Liste der Formen hinzu
         this.boundingBox = this.boundingBox.extend(shape.bounds());  // Erweitert die Bounding-Box, um die Form einzuschließen
+        updateTransformedBoundingBox();
+    }
+
+    /*
+     * Ersetzt die lineare Liste der Formen durch eine automatisch gebaute Hüllkörper-Hierarchie (BVH).
+     * Formen mit unendlicher Ausdehnung (z.B. Background) bleiben außerhalb der BVH und werden
+     * weiterhin einzeln getestet. Danach wächst der Aufwand für den nächsten Treffer nur noch
+     * logarithmisch mit der Anzahl der Formen.
+     */
+    public void buildBvh() {
+        buildBvh(BuildStrategy.SAH);
+    }
+
+    /*
+     * Wie buildBvh(), aber mit wählbarer Strategie. LBVH baut deutlich schneller und eignet sich
+     * für Gruppen, die sich jedes Bild ändern.
+     */
+    public void buildBvh(BuildStrategy strategy) {
+        ArrayList<Shape> bounded = new ArrayList<>();
+        ArrayList<Shape> unbounded = new ArrayList<>();
+        for (Shape s : forms) {
+            if (isFinite(s.bounds())) {
+                bounded.add(s);
+            } else {
+                unbounded.add(s);
+            }
+        }
+
+        forms = unbounded;
+        Shape root = BVHBuilder.build(bounded, strategy);
+        if (root != null) {
+            forms.add(0, root);
+        }
+    }
+
+    static boolean isFinite(BoundingBox box) {
+        return Double.isFinite(box.min.x()) && Double.isFinite(box.min.y()) && Double.isFinite(box.min.z())
+            && Double.isFinite(box.max.x()) && Double.isFinite(box.max.y()) && Double.isFinite(box.max.z());
     }
 
     /*
-     * Setzt eine neue Transformationsmatrix für die Gruppe und berechnet die Inverse und transponierte Inverse.
+     * Die Bounding-Box wird lokal gespeichert, für die übergeordnete Gruppe muss sie aber
+     * in deren Koordinatensystem vorliegen (siehe Affine.transform(BoundingBox)).
+     */
+    private void updateTransformedBoundingBox() {
+        if (transform.isIdentity() || boundingBox.equals(BoundingBox.empty) || !isFinite(boundingBox)) {
+            transformedBoundingBox = boundingBox;
+        } else {
+            transformedBoundingBox = transform.transform(boundingBox);
+        }
+    }
+
+    /*
+     * Setzt eine neue Transformationsmatrix für die Gruppe und berechnet die Inverse. Normalen werden
+     * mit inverse.transformNormal transformiert, eine transponierte Inverse wird nicht gespeichert.
      */
     public void setTransformation(Matrix newTransformationMatrix) {
-        // Multipliziert die aktuelle Matrix mit der neuen Transformationsmatrix
-        this.matrix = Matrix.multiply(newTransformationMatrix, this.matrix);
+        // Multipliziert die aktuelle Transformation mit der neuen und berechnet die Inverse
+        setTransform(Affine.of(newTransformationMatrix).multiply(this.transform));
+    }
+
+    /*
+     * Ersetzt die Transformationsmatrix der Gruppe (statt sie wie setTransformation zu multiplizieren).
+     * Die Boxen der übergeordneten Gruppen werden dabei nicht angepasst, dafür muss anschließend
+     * refit() auf der Wurzel aufgerufen werden. Achtung: Gruppen, die beim Kompilieren der
+     * Szene die Einheitsmatrix hatten, wurden dabei aufgelöst.
+     */
+    public void setMatrix(Matrix newMatrix) {
+        setTransform(Affine.of(newMatrix));
+    }
 
-        // Berechnet die Inverse und transponierte Inverse der neuen Matrix
-        this.inverseMatrix = Matrix.invert(this.matrix);
-        this.transposedInverseMatrix = Matrix.transpose(this.inverseMatrix);
+    /*
+     * Wie setMatrix, aber direkt mit einer affinen Transformation.
+     */
+    public void setTransform(Affine newTransform) {
+        this.transform = newTransform;
+        this.inverse = newTransform.invert();
+        updateTransformedBoundingBox();
+    }
+
+    /*
+     * Berechnet die Bounding-Box von unten nach oben neu: zuerst werden alle Kinder angepasst,
+     * dann wird die eigene Box aus deren Boxen zusammengesetzt.
+     */
+    @Override
+    public void refit() {
+        BoundingBox box = BoundingBox.empty;
+        for (Shape s : forms) {
+            if (s instanceof Refittable r) {
+                r.refit();
+            }
+            box = box.extend(s.bounds());
+        }
+        this.boundingBox = box;
+        updateTransformedBoundingBox();
+    }
+
+    /*
+     * Gibt die Formen der Gruppe zurück (wird beim Kompilieren der Szene gebraucht).
+     */
+    ArrayList<Shape> getForms() {
+        return forms;
+    }
+
+    /*
+     * true, wenn die Gruppe keine Transformation besitzt und nur zum Gruppieren dient.
+     */
+    boolean isIdentity() {
+        return transform.isIdentity();
     }
 
     /*
      * Gibt die aktuelle Transformationsmatrix der Gruppe zurück.
      */
     public Matrix getTransformation() {
-        return this.matrix;
+        return transform.toMatrix();
+    }
+
+    public Affine getTransform() {
+        return transform;
     }
 
     /*
-     * Gibt die Bounding-Box der gesamten Gruppe zurück.
+     * Gibt die Bounding-Box der gesamten Gruppe im Koordinatensystem der übergeordneten Gruppe zurück.
      */
     @Override
     public BoundingBox bounds() {
-        return boundingBox;
+        return transformedBoundingBox;
     }
 
     /*
      * Berechnet den nächsten Schnittpunkt eines Strahls mit der Gruppe.
      * Der Strahl wird zuerst in das Koordinatensystem der Gruppe transformiert.
-     * Falls der Strahl mit der Bounding-Box der Gruppe kollidiert, wird jede Form innerhalb der Gruppe auf Kollision überprüft.
+     * Falls der Strahl mit der Bounding-Box der Gruppe kollidiert, wird für die Formen von vorne
+     * nach hinten nur der Strahlparameter bestimmt (intersectT). Der vollständige Treffer wird danach einmal für die
+     * nächste Form erzeugt und zurücktransformiert.
      */
     @Override
     public Hit intersect(Ray ray) {
-        Hit closestHit = null;
-
-        // Transformiert den Ursprung und die Richtung des Strahls in das Koordinatensystem der Gruppe
-        Point rayTransformedOrigin = Matrix.multiply(inverseMatrix, ray.origin());
-        Direction rayTransformedDirection = Matrix.multiply(inverseMatrix, ray.direction());
+        return intersect(ray, ray.tMax());
+    }
 
-        // Erstellt einen transformierten Strahl mit den neuen Ursprungs- und Richtungsvektoren
-        Ray transformedRay = new Ray(rayTransformedOrigin, rayTransformedDirection, ray.tMin(), ray.tMax());
+    @Override
+    public Hit intersect(Ray ray, double tMax) {
+        Ray transformedRay = toLocal(ray);
 
         // Überprüft, ob der transformierte Strahl mit der Bounding-Box der Gruppe kollidiert
-        if (!this.bounds().intersect(transformedRay)) {
+        if (Double.isNaN(boundingBox.entry(transformedRay, tMax))) {
             return null;  // Wenn keine Kollision mit der Bounding-Box vorliegt, gibt es keinen Treffer
         }
 
-        // Überprüft jede Form in der Gruppe auf Kollision mit dem transformierten Strahl
-        for (Shape s : forms) {
-            Hit hit = s.intersect(transformedRay);  // Überprüft Kollision mit der aktuellen Form
-            if (hit != null && (closestHit == null || hit.t() < closestHit.t())) {
-                closestHit = hit;  // Wenn ein näherer Treffer gefunden wird, wird dieser gespeichert
+        // Sucht die Form mit dem kleinsten Strahlparameter. Einfache Formen werden direkt getestet,
+        // ein Boxtest wäre kaum günstiger. Zusammengesetzte Formen (Untergruppen, BVHs) werden
+        // nach der Distanz sortiert, bei der der Strahl ihre Box betritt, und danach von vorne
+        // nach hinten besucht. Sobald eine Box hinter dem bisher nächsten Treffer beginnt, können
+        // alle weiteren übersprungen werden.
+        Hit closestHit;
+        Nearest nearest = Nearest.acquire(transformedRay, tMax);
+        try {
+            TraversalStack stack = TraversalStack.current();
+            int base = stack.top;
+            for (int i = 0; i < forms.size(); i++) {
+                Shape s = forms.get(i);
+                if (!s.isAggregate()) {
+                    nearest.test(s);
+                    continue;
+                }
+                double entry = s.bounds().entry(transformedRay, nearest.limit());
+                if (!Double.isNaN(entry)) {
+                    stack.pushSorted(base, i, entry);
+                }
             }
+            while (stack.top > base) {
+                int i = stack.pop();
+                if (stack.entry() > nearest.limit()) {
+                    stack.top = base;
+                    break;
+                }
+                nearest.test(forms.get(i));
+            }
+            closestHit = nearest.hit();
+        } finally {
+            nearest.release();
+        }
+        if (closestHit == null) {
+            return null;
         }
 
-        // Falls ein Treffer vorliegt, transformiere den Treffer zurück in das ursprüngliche Koordinatensystem
-        if (closestHit != null) {
-            Point transformedClosestHitPoint = Matrix.multiply(matrix, closestHit.hit());  // Transformiert den Treffpunkt
-            Direction transformedClosestHitDirection = Matrix.multiply(transposedInverseMatrix, closestHit.normalV());  // Transformiert die Normale
+        // Transformiere den Treffer zurück in das ursprüngliche Koordinatensystem
+        if (!transform.isIdentity()) {
+            Point transformedClosestHitPoint = transform.transform(closestHit.hit());  // Transformiert den Treffpunkt
+            Direction transformedClosestHitDirection = inverse.transformNormal(closestHit.normalV());  // Transformiert die Normale
             Direction transformedNormal = normalize(transformedClosestHitDirection);  // Normiert die transformierte Normale
 
             // Erstelle einen neuen Hit mit den transformierten Werten und gebe ihn zurück
@@ -104,4 +242,38 @@ public class Group implements Shape {
 
         return closestHit;  // Rückgabe des nächstgelegenen Treffpunkts
     }
+
+    @Override
+    public boolean isAggregate() {
+        return true;
+    }
+
+    /*
+     * Transformiert den Ursprung und die Richtung des Strahls in das Koordinatensystem der Gruppe.
+     * Bei der Einheitsmatrix entfällt die Transformation, bei einer reinen Verschiebung wird nur
+     * der Ursprung verschoben.
+     */
+    private Ray toLocal(Ray ray) {
+        return inverse.transform(ray);
+    }
+
+    /*
+     * Schattentest für die Gruppe. Es wird kein Treffer zurücktransformiert, sondern beim
+     * ersten blockierenden Kind abgebrochen. Bei der Einheitsmatrix entfällt die Transformation.
+     */
+    @Override
+    public boolean occluded(Ray ray) {
+        Ray transformedRay = toLocal(ray);
+
+        if (!boundingBox.intersect(transformedRay)) {
+            return false;
+        }
+
+        for (Shape s : forms) {
+            if (s.occluded(transformedRay)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
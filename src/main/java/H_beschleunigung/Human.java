@@ -19,6 +19,7 @@ public class Human extends Group{
     double armLength = 4.0;
 
     Material material;
+    BodyStyle style;
     double shoulderAngleLeft;
     double elbowAngleLeft;
     double shoulderAngleRight; 
@@ -28,6 +29,29 @@ public class Human extends Group{
     double kneeAngleLeft;
     double kneeAngleRight;
 
+    private Limb armLeft;
+    private Limb armRight;
+    private Limb legLeft;
+    private Limb legRight;
+
+    /*
+     * Die Gelenkwinkel einer Pose in Grad.
+     */
+    public record Pose(
+        double shoulderAngleLeft,
+        double elbowAngleLeft,
+        double shoulderAngleRight,
+        double elbowAngleRight,
+        double hipAngleLeft,
+        double hipAngleRight,
+        double kneeAngleLeft,
+        double kneeAngleRight) {
+    }
+
+    public Human(Material material, Pose pose) {
+        this(material, pose, BodyStyle.BOXES);
+    }
+
     public Human(
         Material material, 
         double shoulderAngleLeft, 
@@ -38,17 +62,26 @@ public class Human extends Group{
         double hipAngleRight,
         double kneeAngleLeft,
         double kneeAngleRight) {
+        this(material, new Pose(shoulderAngleLeft, elbowAngleLeft, shoulderAngleRight, elbowAngleRight,
+            hipAngleLeft, hipAngleRight, kneeAngleLeft, kneeAngleRight));
+    }
 
+    /*
+     * Mit BodyStyle.CAPSULES bestehen Arme und Beine aus Kapseln und der Hals aus einem Zylinder
+     * (13 statt 25 Primitive, deutlich weniger Transformationsgruppen).
+     */
+    public Human(Material material, Pose pose, BodyStyle style) {
         super(identity);
         this.material = material;
-        this.shoulderAngleLeft = shoulderAngleLeft;
-        this.elbowAngleLeft  = elbowAngleLeft;
-        this.shoulderAngleRight = shoulderAngleRight;
-        this.elbowAngleRight = elbowAngleRight;
-        this.hipAngleLeft = hipAngleLeft;
-        this.hipAngleRight = hipAngleRight;
-        this.kneeAngleLeft = kneeAngleLeft;
-        this.kneeAngleRight = kneeAngleRight;
+        this.style = style;
+        this.shoulderAngleLeft = pose.shoulderAngleLeft();
+        this.elbowAngleLeft  = pose.elbowAngleLeft();
+        this.shoulderAngleRight = pose.shoulderAngleRight();
+        this.elbowAngleRight = pose.elbowAngleRight();
+        this.hipAngleLeft = pose.hipAngleLeft();
+        this.hipAngleRight = pose.hipAngleRight();
+        this.kneeAngleLeft = pose.kneeAngleLeft();
+        this.kneeAngleRight = pose.kneeAngleRight();
 
         create(); //Koerper erstellen
         //Kopf
@@ -58,7 +91,39 @@ public class Human extends Group{
         //Arme hinzufuegen
         //Beine den Hueften hinzufuegen
 
+        // Einige Gruppen werden erst nach dem Einfügen gefüllt, daher die Boxen einmal anpassen
+        refit();
+    }
+
+    /*
+     * Setzt alle Gelenkwinkel auf die Pose und passt danach die Bounding-Boxen einmal von unten
+     * nach oben an (O(n)). Der Körper wird dabei nicht neu aufgebaut. Liegt der Human in einer
+     * kompilierten Szene, muss zusätzlich Scene.refit() aufgerufen werden.
+     */
+    public void setPose(Pose pose) {
+        this.shoulderAngleLeft = pose.shoulderAngleLeft();
+        this.elbowAngleLeft = pose.elbowAngleLeft();
+        this.shoulderAngleRight = pose.shoulderAngleRight();
+        this.elbowAngleRight = pose.elbowAngleRight();
+        this.hipAngleLeft = pose.hipAngleLeft();
+        this.hipAngleRight = pose.hipAngleRight();
+        this.kneeAngleLeft = pose.kneeAngleLeft();
+        this.kneeAngleRight = pose.kneeAngleRight();
+
+        armLeft.setShoulderAngle(shoulderAngleLeft);
+        armLeft.setElbowAngle(elbowAngleLeft);
+        armRight.setShoulderAngle(shoulderAngleRight);
+        armRight.setElbowAngle(elbowAngleRight);
+        legLeft.setShoulderAngle(hipAngleLeft);
+        legLeft.setElbowAngle(kneeAngleLeft);
+        legRight.setShoulderAngle(hipAngleRight);
+        legRight.setElbowAngle(kneeAngleRight);
+        refit();
+    }
 
+    public Pose getPose() {
+        return new Pose(shoulderAngleLeft, elbowAngleLeft, shoulderAngleRight, elbowAngleRight,
+            hipAngleLeft, hipAngleRight, kneeAngleLeft, kneeAngleRight);
     }
     private void create() {
         createHead();
@@ -67,6 +132,17 @@ public class Human extends Group{
         createLegs();
     }
     private void createHead() {
+        if (style == BodyStyle.CAPSULES) {
+            // Hals als Zylinder mit denselben Maßen wie der skalierte Quader
+            Group headGroup = new Group(identity);
+            headGroup.add(new Sphere(zero, headRadius, material));
+            headGroup.add(new Cylinder(
+                point(0, -headRadius / 2, 0),
+                point(0, -headRadius / 2 - 2.2 * headRadius / 1.5, 0),
+                headRadius / 3, material));
+            this.add(headGroup);
+            return;
+        }
         Matrix neckTransform = Matrix.multiply(
             translation(direction(0,-headRadius/2,0)),
             scaling(1, 2.2, 1));
@@ -75,7 +151,7 @@ public class Human extends Group{
         Group neckGroup = new Group(neckTransform);
 
         headGroup.add(new Sphere(zero, headRadius, material));
-        neckGroup.add(new Cube(headRadius/1.5, this.material));
+        neckGroup.add(Box.cube(headRadius/1.5, this.material));
 
         this.add(headGroup);
         headGroup.add(neckGroup);
@@ -98,9 +174,9 @@ public class Human extends Group{
         Group stomachGroup = new Group(stomachTransform);
         Group hipGroup = new Group(hipsTransform);
 
-        chestGroup.add(new Cube(chest, this.material));
-        stomachGroup.add(new Cube(stomach, this.material));
-        hipGroup.add(new Cube(hip, this.material));
+        chestGroup.add(Box.cube(chest, this.material));
+        stomachGroup.add(Box.cube(stomach, this.material));
+        hipGroup.add(Box.cube(hip, this.material));
         this.add(chestGroup);
         chestGroup.add(stomachGroup);
         stomachGroup.add(hipGroup);
@@ -108,7 +184,7 @@ public class Human extends Group{
 
     private void createArms() {
         
-        Limb armLeft = new Limb(
+        armLeft = new Limb(
             this.material, 
             shoulderAngleLeft,
             elbowAngleLeft,
@@ -117,18 +193,20 @@ public class Human extends Group{
             armWidth,
             armLength,
             armWidth,
-            armLength);
+            armLength,
+            style);
         
-        Limb armRight = new Limb(
+        armRight = new Limb(
             this.material, 
             shoulderAngleRight,
-            elbowAngleLeft,
+            elbowAngleRight,
             shoulderRadius,
             elbowRadius,
             armWidth,
             armLength,
             armWidth,
-            armLength);
+            armLength,
+            style);
         
         Group leftArmGroup = new Group(multiply(
             translation(direction(-(chest*2), (-headRadius*2.2), 1)),
@@ -147,7 +225,7 @@ public class Human extends Group{
 
     private void createLegs() {
         
-        Limb legLeft = new Limb(
+        legLeft = new Limb(
             this.material, 
             hipAngleLeft,
             kneeAngleLeft,
@@ -156,9 +234,10 @@ public class Human extends Group{
             armWidth,
             armLength,
             armWidth,
-            armLength);
+            armLength,
+            style);
         
-        Limb legRight = new Limb(
+        legRight = new Limb(
             this.material, 
             hipAngleRight,
             kneeAngleRight,
@@ -167,7 +246,8 @@ public class Human extends Group{
             armWidth,
             armLength,
             armWidth,
-            armLength);
+            armLength,
+            style);
         
         Group leftLegGroup = new Group(multiply(
             translation(direction(-(hip*2.2), ((-(1.5*headRadius)-chest-stomach-hip)*2), 1)),
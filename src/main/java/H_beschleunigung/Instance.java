@@ -0,0 +1,109 @@
+package H_beschleunigung;
+
+import lib_cgtools.*;
+import static lib_cgtools.Vector.*;
+
+/*
+ * Eine Instanz zeigt auf eine gemeinsam genutzte Geometrie und platziert sie mit einer eigenen
+ * Transformation in der Szene. Zusammen ergibt das eine zweistufige Hierarchie:
+ *
+ * - Unten: pro einmaliger Geometrie (z.B. ein Human) eine FlatBVH, die nur einmal gebaut wird.
+ * - Oben:  eine FlatBVH über alle Instanzen (Scene.compile()). Instanzen werden dabei nicht
+ *          aufgelöst, sondern bleiben als ein Primitiv mit ihrer transformierten Box erhalten.
+ *
+ * Der Speicherbedarf wächst dadurch mit der Anzahl der unterschiedlichen Geometrien und nicht
+ * mit der Anzahl der Instanzen. Optional überschreibt eine Instanz das Material aller Treffer.
+ */
+public class Instance implements Shape, Refittable {
+
+    private FlatBVH geometry;                   // Gemeinsam genutzte Geometrie (untere Ebene)
+    private Affine transform;                   // Transformation der Instanz
+    private Affine inverse;                     // Die Inverse (auch für die Normalen)
+    private Material material;                  // Ersetzt das Material der Geometrie (null = beibehalten)
+    private BoundingBox boundingBox;            // Box der Geometrie im Koordinatensystem der Szene
+
+    /*
+     * Erzeugt eine Instanz der Geometrie mit der Transformation matrix.
+     */
+    public Instance(FlatBVH geometry, Matrix matrix) {
+        this(geometry, matrix, null);
+    }
+
+    /*
+     * Erzeugt eine Instanz, deren Treffer alle das angegebene Material bekommen.
+     */
+    public Instance(FlatBVH geometry, Matrix matrix, Material material) {
+        this.geometry = geometry;
+        this.transform = Affine.of(matrix);
+        this.inverse = transform.invert();
+        this.material = material;
+        this.boundingBox = transform.transform(geometry.bounds());
+    }
+
+    /*
+     * Baut die untere Ebene für eine Geometrie. Das Ergebnis kann von beliebig vielen
+     * Instanzen gemeinsam benutzt werden.
+     */
+    public static FlatBVH prototype(Shape shape) {
+        return new FlatBVH(shape);
+    }
+
+    public FlatBVH getGeometry() {
+        return geometry;
+    }
+
+    public Matrix getTransformation() {
+        return transform.toMatrix();
+    }
+
+    /*
+     * Passt nur die eigene Box an. Die gemeinsame Geometrie wird nicht angepasst, da sie sonst
+     * einmal pro Instanz angepasst würde: nach einer Änderung genügt ein einziges
+     * getGeometry().refit() für alle Instanzen.
+     */
+    @Override
+    public void refit() {
+        this.boundingBox = transform.transform(geometry.bounds());
+    }
+
+    @Override
+    public BoundingBox bounds() {
+        return boundingBox;
+    }
+
+    /*
+     * Der Strahl wird in das Koordinatensystem der Geometrie transformiert, der Treffer danach
+     * zurück. Der Strahlparameter t bleibt dabei gültig, da die Richtung nicht normiert wird.
+     */
+    @Override
+    public Hit intersect(Ray ray) {
+        return intersect(ray, ray.tMax());
+    }
+
+    @Override
+    public Hit intersect(Ray ray, double tMax) {
+        Hit hit = geometry.intersect(toLocal(ray), tMax);
+        if (hit == null) {
+            return null;
+        }
+
+        Point point = transform.transform(hit.hit());
+        Direction normal = normalize(inverse.transformNormal(hit.normalV()));
+        return new Hit(hit.t(), point, normal, material != null ? material : hit.material(), hit.u(), hit.v());
+    }
+
+    @Override
+    public boolean isAggregate() {
+        return true;
+    }
+
+    @Override
+    public boolean occluded(Ray ray) {
+        return geometry.occluded(toLocal(ray));
+    }
+
+    // Strahl im Koordinatensystem der Geometrie
+    private Ray toLocal(Ray ray) {
+        return inverse.transform(ray);
+    }
+}
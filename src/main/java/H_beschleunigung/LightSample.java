@@ -0,0 +1,11 @@
+package H_beschleunigung;
+
+import lib_cgtools.*;
+
+/*
+ * Ergebnis von AreaLight.sample: normierte Richtung von p zur Lichtquelle, Abstand zum
+ * gewählten Punkt (unendlich beim Hintergrund), die dort abgegebene Strahlung und die Dichte
+ * der Richtung bezogen auf den Raumwinkel.
+ */
+public record LightSample(Direction direction, double distance, Color radiance, double pdf) {
+}
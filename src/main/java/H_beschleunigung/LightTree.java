@@ -0,0 +1,198 @@
+package H_beschleunigung;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import lib_cgtools.*;
+
+/*
+ * Hüllkörper-Hierarchie über die Punktlichter einer Szene, um bei sehr vielen Lichtquellen pro
+ * Treffer nur wenige, wichtige Lichter zu testen (Light BVH, nach Conty Estevez und Kulla,
+ * "Importance Sampling of Many Lights with Adaptive Tree Splitting").
+ *
+ * Jeder Knoten speichert die Box seiner Lichter und ihre summierte Leistung. Beim Sampeln wird
+ * von der Wurzel aus in jedem Knoten ein Kind mit einer Wahrscheinlichkeit proportional zu seiner
+ * geschätzten Wichtigkeit für den Trefferpunkt gewählt, bis ein einzelnes Licht erreicht ist.
+ * Die Wahrscheinlichkeit des Lichts ist das Produkt der Entscheidungen, der Aufwand O(log L).
+ *
+ * Wichtigkeit eines Knotens: Leistung / Abstand^2 zur Mitte der Box (der Abstand^2 mindestens so
+ * groß wie das Quadrat der halben Diagonale, damit nahe Cluster nicht unendlich wichtig werden),
+ * mal einer oberen Schranke für den Cosinus zwischen der Normale und der Richtung zur Box. Punktlichter strahlen in alle
+ * Richtungen, eine Richtungsschranke der Lichter selbst entfällt. Cluster hinter der Oberfläche
+ * behalten ein kleines Restgewicht, da PhongMaterial auch dort Glanzlichter erzeugen kann; so
+ * bleibt jedes Licht mit Leistung wählbar und das Ergebnis erwartungstreu.
+ *
+ * Alle anderen Lichtquellen (z.B. DirectionalLight) haben keinen Ort und kommen nicht in den Baum,
+ * sie werden wie bisher an jedem Treffer einzeln getestet (getOthers).
+ *
+ * Aufbau wie bei FlatBVH in zusammenhängenden Arrays: das linke Kind folgt direkt auf seinen
+ * Knoten, nodes enthält für innere Knoten den Index des rechten Kindes und für Blätter
+ * -(Index des Lichts + 1).
+ */
+public class LightTree {
+
+    // Restgewicht für Cluster, die ganz hinter der Oberfläche liegen
+    private static final double BACKFACE_WEIGHT = 0.1;
+
+    private final PointLight[] lights;   // Punktlichter in der Reihenfolge der Blätter
+    private final ArrayList<DirectLight> others = new ArrayList<>();
+
+    private double[] bounds;  // 6 Werte pro Knoten: min x, y, z, max x, y, z
+    private double[] power;   // Summierte Leistung der Lichter unter dem Knoten
+    private int[] nodes;      // Rechtes Kind oder -(Licht + 1) für Blätter
+
+    /*
+     * Ergebnis von sample: das gewählte Licht und die Wahrscheinlichkeit, mit der es gewählt wurde.
+     */
+    public record Choice(PointLight light, double probability) {
+    }
+
+    public LightTree(List<DirectLight> allLights) {
+        ArrayList<PointLight> points = new ArrayList<>();
+        for (DirectLight light : allLights) {
+            if (light instanceof PointLight point) {
+                points.add(point);
+            } else {
+                others.add(light);
+            }
+        }
+        lights = points.toArray(new PointLight[0]);
+        if (lights.length == 0) {
+            return;
+        }
+
+        int count = 2 * lights.length - 1;
+        bounds = new double[6 * count];
+        power = new double[count];
+        nodes = new int[count];
+        build(0, lights.length, 0);
+    }
+
+    /*
+     * Baut den Teilbaum über lights[start, end) ab dem Knoten node und gibt den nächsten freien
+     * Knoten zurück. Geteilt wird in der Mitte der längsten Achse der Box (nach Anzahl).
+     */
+    private int build(int start, int end, int node) {
+        double minX = Double.POSITIVE_INFINITY, minY = minX, minZ = minX;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = maxX, maxZ = maxX;
+        double sum = 0;
+        for (int i = start; i < end; i++) {
+            Point p = lights[i].getPosition();
+            minX = Math.min(minX, p.x());
+            minY = Math.min(minY, p.y());
+            minZ = Math.min(minZ, p.z());
+            maxX = Math.max(maxX, p.x());
+            maxY = Math.max(maxY, p.y());
+            maxZ = Math.max(maxZ, p.z());
+            sum += power(lights[i]);
+        }
+        int b = 6 * node;
+        bounds[b] = minX;
+        bounds[b + 1] = minY;
+        bounds[b + 2] = minZ;
+        bounds[b + 3] = maxX;
+        bounds[b + 4] = maxY;
+        bounds[b + 5] = maxZ;
+        power[node] = sum;
+
+        if (end - start == 1) {
+            nodes[node] = -(start + 1);
+            return node + 1;
+        }
+
+        double dx = maxX - minX, dy = maxY - minY, dz = maxZ - minZ;
+        Comparator<PointLight> order = dx >= dy && dx >= dz
+            ? Comparator.comparingDouble(l -> l.getPosition().x())
+            : dy >= dz
+                ? Comparator.comparingDouble(l -> l.getPosition().y())
+                : Comparator.comparingDouble(l -> l.getPosition().z());
+        Arrays.sort(lights, start, end, order);
+
+        int mid = (start + end) >>> 1;
+        int right = build(start, mid, node + 1);
+        nodes[node] = right;
+        return build(mid, end, right);
+    }
+
+    // Leistung eines Lichts: Mittelwert der Farbkanäle
+    private static double power(PointLight light) {
+        Color c = light.getlightColor();
+        return (c.r() + c.g() + c.b()) / 3;
+    }
+
+    /*
+     * Wählt mit der Zufallszahl u aus [0, 1) ein Punktlicht für den Punkt p mit der Normalen n.
+     * u wird nach jeder Entscheidung auf [0, 1) zurückskaliert und weiterverwendet. null, wenn
+     * der Baum leer ist.
+     */
+    public Choice sample(Point p, Direction n, double u) {
+        if (lights.length == 0) {
+            return null;
+        }
+        int node = 0;
+        double probability = 1;
+        while (nodes[node] >= 0) {
+            int left = node + 1;
+            int right = nodes[node];
+            double importanceLeft = importance(left, p, n);
+            double importanceRight = importance(right, p, n);
+            double sum = importanceLeft + importanceRight;
+            double pLeft = sum > 0 ? importanceLeft / sum : 0.5;
+            if (u < pLeft) {
+                u = u / pLeft;
+                probability *= pLeft;
+                node = left;
+            } else {
+                u = Math.min((u - pLeft) / (1 - pLeft), Math.nextDown(1.0));
+                probability *= 1 - pLeft;
+                node = right;
+            }
+        }
+        return new Choice(lights[-(nodes[node] + 1)], probability);
+    }
+
+    /*
+     * Geschätzte Wichtigkeit des Knotens für den Punkt p mit der Normalen n (siehe oben).
+     */
+    private double importance(int node, Point p, Direction n) {
+        int b = 6 * node;
+        double cx = 0.5 * (bounds[b] + bounds[b + 3]) - p.x();
+        double cy = 0.5 * (bounds[b + 1] + bounds[b + 4]) - p.y();
+        double cz = 0.5 * (bounds[b + 2] + bounds[b + 5]) - p.z();
+        double ex = bounds[b + 3] - bounds[b];
+        double ey = bounds[b + 4] - bounds[b + 1];
+        double ez = bounds[b + 5] - bounds[b + 2];
+        double distance2 = cx * cx + cy * cy + cz * cz;
+        double radius2 = 0.25 * (ex * ex + ey * ey + ez * ez);
+
+        // Größter Cosinus zur Normale: die Box liegt in einem Kegel um die Richtung zur Mitte
+        double cos = 1;
+        if (distance2 > radius2) {
+            double distance = Math.sqrt(distance2);
+            double cosTheta = (n.x() * cx + n.y() * cy + n.z() * cz) / distance;
+            double cosCone = Math.sqrt(1 - radius2 / distance2);
+            if (cosTheta < cosCone) {
+                double sinTheta = Math.sqrt(Math.max(0, 1 - cosTheta * cosTheta));
+                double sinCone = Math.sqrt(radius2 / distance2);
+                cos = cosTheta * cosCone + sinTheta * sinCone;  // cos(theta - Öffnungswinkel)
+            }
+        }
+        return power[node] * Math.max(cos, BACKFACE_WEIGHT) / Math.max(Math.max(distance2, radius2), 1e-12);
+    }
+
+    // Anzahl der Punktlichter im Baum
+    public int size() {
+        return lights.length;
+    }
+
+    public PointLight[] getLights() {
+        return lights;
+    }
+
+    // Lichtquellen ohne Ort, die nicht im Baum liegen
+    public List<DirectLight> getOthers() {
+        return others;
+    }
+}
@@ -6,13 +6,16 @@ import static lib_cgtools.Matrix.rotation;
 import static lib_cgtools.Matrix.scaling;
 import static lib_cgtools.Matrix.translation;
 import static lib_cgtools.Vector.direction;
+import static lib_cgtools.Vector.point;
 import static lib_cgtools.Vector.zero;
 
 import lib_cgtools.Matrix;
 
 
 /*
- * Stellt ein Arm oder Bein in der Szene dar.
+ * Stellt ein Arm oder Bein in der Szene dar. Mit BodyStyle.CAPSULES besteht jeder der beiden
+ * Abschnitte aus einer einzigen Kapsel vom oberen zum unteren Gelenk (Radius elbowRadius)
+ * statt aus Gelenkkugel und skaliertem Quader.
  */
 public class Limb extends Group{
     double shoulderAngle;
@@ -25,6 +28,9 @@ public class Limb extends Group{
     double lowerArmLength;
     Material material;
 
+    private Group schoulderGroup; // Gelenk an der Schulter bzw. Hüfte
+    private Group elbowGroup;     // Gelenk am Ellbogen bzw. Knie
+
     public Limb(
         Material material,
         double shoulderAngle,
@@ -36,6 +42,22 @@ public class Limb extends Group{
         double lowerArmWidth,
         double lowerArmLength
         ) {
+        this(material, shoulderAngle, elbowAngle, shoulderRadius, elbowRadius, armWidth, armLength,
+            lowerArmWidth, lowerArmLength, BodyStyle.BOXES);
+    }
+
+    public Limb(
+        Material material,
+        double shoulderAngle,
+        double elbowAngle,
+        double shoulderRadius,
+        double elbowRadius,
+        double armWidth,
+        double armLength,
+        double lowerArmWidth,
+        double lowerArmLength,
+        BodyStyle style
+        ) {
         super(identity);
         this.material = material;
         this.shoulderAngle = shoulderAngle;
@@ -47,10 +69,19 @@ public class Limb extends Group{
         this.lowerArmWidth = lowerArmWidth;
         this.lowerArmLength = lowerArmLength;
 
+        // createBoxes und createCapsules bauen die Gruppen nur auf, eingefügt wird hier
+        // einmal die Gruppe der Schulter
+        this.add(style == BodyStyle.CAPSULES ? createCapsules() : createBoxes());
+
+        // Die Gelenke wurden erst nach dem Einfügen gefüllt, daher die Boxen einmal anpassen
+        refit();
+    }
+
+    // Baut Gelenke, Quader und Hand auf und liefert die Gruppe der Schulter
+    private Group createBoxes() {
         //Schulter
-        Group schoulderGroup = new Group(rotation(direction(1, 0, 0), shoulderAngle));
+        schoulderGroup = new Group(shoulderTransform());
         schoulderGroup.add(new Sphere(zero, shoulderRadius, this.material));
-        this.add(schoulderGroup);
 
         
         //Oberarm
@@ -59,15 +90,13 @@ public class Limb extends Group{
             scaling(armWidth, armLength, armWidth / 2));
         Group upperArmGroup = new Group(identity);
         Group upperArm = new Group(upperArmTransform);
-        upperArm.add(new Cube(armWidth, material));
+        upperArm.add(Box.cube(armWidth, material));
         upperArmGroup.add(upperArm);
         schoulderGroup.add(upperArmGroup);
         
 
         //Ellbogen
-        Group elbowGroup = new Group(multiply(
-            translation(0, (-shoulderRadius - armLength - elbowRadius) , 0), 
-            rotation(1,0,0, elbowAngle)));
+        elbowGroup = new Group(elbowTransform());
         elbowGroup.add(new Sphere(zero, elbowRadius, material));
         upperArmGroup.add(elbowGroup);
         //this.add(elbowGroup);
@@ -79,7 +108,7 @@ public class Limb extends Group{
             scaling(lowerArmWidth, lowerArmLength, 1));
         Group lowerArmGroup = new Group(identity);
         Group lowerArm = new Group(lowerArmTransform);
-        lowerArm.add(new Cube(lowerArmWidth, material));
+        lowerArm.add(Box.cube(lowerArmWidth, material));
         lowerArmGroup.add(lowerArm);
         elbowGroup.add(lowerArmGroup);
 
@@ -90,6 +119,49 @@ public class Limb extends Group{
         handGroup.add(new Sphere(zero, elbowRadius, material));
         lowerArmGroup.add(handGroup);
         //this.add(elbowGroup);
+        return schoulderGroup;
+    }
+
+    /*
+     * Ober- und Unterarm als je eine Kapsel. Die Gelenke liegen an denselben Stellen wie bei
+     * createBoxes, die Kapsel des Unterarms dreht sich mit dem Ellbogen.
+     */
+    private Group createCapsules() {
+        double segment = -shoulderRadius - armLength - elbowRadius;
+
+        schoulderGroup = new Group(shoulderTransform());
+        schoulderGroup.add(new Capsule(zero, point(0, segment, 0), elbowRadius, material));
+
+        elbowGroup = new Group(elbowTransform());
+        elbowGroup.add(new Capsule(zero, point(0, segment, 0), elbowRadius, material));
+        schoulderGroup.add(elbowGroup);
+        return schoulderGroup;
+    }
+
+    private Matrix shoulderTransform() {
+        return rotation(direction(1, 0, 0), shoulderAngle);
+    }
 
+    private Matrix elbowTransform() {
+        return multiply(
+            translation(0, (-shoulderRadius - armLength - elbowRadius) , 0), 
+            rotation(1,0,0, elbowAngle));
+    }
+
+    /*
+     * Dreht das obere Gelenk (Schulter bzw. Hüfte). Die Boxen werden erst durch refit()
+     * angepasst, damit mehrere Gelenke mit einem einzigen Refit geändert werden können.
+     */
+    public void setShoulderAngle(double shoulderAngle) {
+        this.shoulderAngle = shoulderAngle;
+        schoulderGroup.setMatrix(shoulderTransform());
+    }
+
+    /*
+     * Dreht das untere Gelenk (Ellbogen bzw. Knie), siehe setShoulderAngle.
+     */
+    public void setElbowAngle(double elbowAngle) {
+        this.elbowAngle = elbowAngle;
+        elbowGroup.setMatrix(elbowTransform());
     }
 }
@@ -16,17 +16,33 @@ public class Main {
         // Die Anzahl der Objekte, die in der Szene enthalten sein sollen
         int[] objectCounts = { 10, 100, 1000, 10000 };
 
-        // Liste, die die Laufzeiten für jedes Szenario speichert
+        // Listen, die die Bauzeiten der Hierarchie und die Renderzeiten für jedes Szenario speichern
+        ArrayList<Long> buildTimes = new ArrayList<>();
         ArrayList<Long> runtimesWithBoundingBox = new ArrayList<>();
+        ArrayList<Long> gridBuildTimes = new ArrayList<>();
+        ArrayList<Long> gridRuntimes = new ArrayList<>();
         
         // Erzeugt eine Random-Instanz, um zufällige Positionen für die Objekte zu generieren
         Random random = new Random();
 
+        // Anzahl der Render-Threads (optional als erstes Programmargument, sonst alle Kerne)
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        TileRenderer renderer = new TileRenderer(threads);
+
+        // Strategie für den Aufbau der Hierarchie (optional als zweites Programmargument: SAH oder LBVH)
+        BuildStrategy strategy = args.length > 1 ? BuildStrategy.valueOf(args[1].toUpperCase()) : BuildStrategy.SAH;
+
+        // Zufallszahlen der Samples (optional als viertes Programmargument: RANDOM, SOBOL oder HALTON)
+        String sequence = args.length > 3 ? args[3].toUpperCase() : "RANDOM";
+        lib_cgtools.Random.useSequence(switch (sequence) {
+            case "RANDOM" -> null;
+            case "SOBOL" -> new SobolSequence();
+            case "HALTON" -> new HaltonSequence();
+            default -> throw new IllegalArgumentException("unknown sample sequence " + args[3]);
+        });
+
         // Iteriere über die verschiedenen Objektanzahlen
         for (int count : objectCounts) {
-            // Starte die Zeitmessung
-            long startTimeWith = System.currentTimeMillis();
-
             final int width = 1920;  // Breite des Bildes
             final int height = 1080; // Höhe des Bildes
             Image image = new Image(width, height);  // Erstelle ein neues Bild
@@ -61,14 +77,6 @@ public class Main {
             // Füge eine Lichtquelle (DirectionalLight) zur Szene hinzu
             lightList.add(new DirectionalLight(direction(-1, -1, -0.8), color(0.8, 0.8, 0.8)));
 
-            // Erstelle Untergruppen für das Gruppieren der Objekte
-            int groupCount = 10;
-            Group[] subGroups = new Group[groupCount];
-            for (int i = 0; i < groupCount; i++) {
-                subGroups[i] = new Group(Matrix.identity());
-                group.add(subGroups[i]);
-            }
-
             // Füge zufällig platzierte Objekte (Sphären) zur Szene hinzu
             for (int i = 0; i < count; i++) {
                 double angle = random.nextDouble() * 2 * Math.PI;  // Zufälliger Winkel
@@ -77,19 +85,25 @@ public class Main {
                 double z = Math.sin(angle) * radius;
 
                 // Erstelle eine neue Sphäre mit zufälliger Position und füge sie der Gruppe hinzu
-                Sphere sphere = new Sphere(new Point(x, 2.5, z), 0.5, greenMaterial);
-                int groupIndex = i % groupCount;  // Verteile die Sphären auf verschiedene Untergruppen
-                subGroups[groupIndex].add(sphere);
+                group.add(new Sphere(new Point(x, 2.5, z), 0.5, greenMaterial));
             }
 
             // Füge den Boden (eine DiscXZ) zur Szene hinzu
             group.add(new DiscXZ(new Point(0, 1, 0), discRadius + 1, groundMaterial));
 
+            // Kompiliere die Szene in eine flache, array-basierte Hüllkörper-Hierarchie
+            long startBuild = System.currentTimeMillis();
+            Scene compiledScene = scene.compile(strategy);
+            buildTimes.add(System.currentTimeMillis() - startBuild);
+
+            // Starte die Zeitmessung für das Rendern
+            long startTimeWith = System.currentTimeMillis();
+
             // Erstelle einen Raytracer, um die Szene zu rendern
-            Raytracer raytracer = new Raytracer(camera, scene, new Color(0.1, 0.1, 0.1));
+            Raytracer raytracer = new Raytracer(camera, compiledScene, new Color(0.1, 0.1, 0.1));
 
-            // Starte das Supersampling und rendere das Bild
-            image.supersample(1, raytracer);
+            // Starte das Supersampling und rendere das Bild parallel in Kacheln
+            renderer.supersample(image, 1, raytracer);
 
             // Speichere das gerenderte Bild
             String filename = "doc/H_beschleunigung-scene-" + count + ".png";
@@ -98,12 +112,89 @@ public class Main {
             // Stoppe die Zeitmessung und berechne die Laufzeit
             long endTimeWith = System.currentTimeMillis();
             runtimesWithBoundingBox.add(endTimeWith - startTimeWith);
+
+            // Zum Vergleich: dieselbe Szene mit einem gleichmäßigen Gitter (3D-DDA) statt der Hierarchie
+            long startGridBuild = System.currentTimeMillis();
+            Scene gridScene = scene.compileGrid();
+            gridBuildTimes.add(System.currentTimeMillis() - startGridBuild);
+
+            long startGrid = System.currentTimeMillis();
+            Image gridImage = new Image(width, height);
+            renderer.supersample(gridImage, 1, new Raytracer(camera, gridScene, new Color(0.1, 0.1, 0.1)));
+            gridImage.write("doc/H_beschleunigung-scene-grid-" + count + ".png");
+            gridRuntimes.add(System.currentTimeMillis() - startGrid);
         }
 
         // Gib die Laufzeiten für die verschiedenen Objektzahlen aus
-        System.out.println("Anzahl Objekte | Mit BoundingBox (ms)");
+        System.out.println("Threads: " + threads + ", Strategie: " + strategy + ", Folge: " + sequence);
+        System.out.println("Anzahl Objekte | Bauzeit BVH (ms) | Mit BoundingBox (ms) | Bauzeit Gitter (ms) | Mit Gitter (ms)");
         for (int i = 0; i < objectCounts.length; i++) {
-            System.out.printf("%15d | %20d\n", objectCounts[i], runtimesWithBoundingBox.get(i));
+            System.out.printf("%15d | %16d | %20d | %19d | %15d\n", objectCounts[i], buildTimes.get(i),
+                    runtimesWithBoundingBox.get(i), gridBuildTimes.get(i), gridRuntimes.get(i));
+        }
+
+        // Massenszene: sehr viele Kugeln als ein einziges SphereSet, nur wenn die Anzahl als drittes
+        // Programmargument angegeben ist (z.B. 20000000; braucht dann etwa 1,3 GB Heap, 0 = keine)
+        if (args.length > 2 && Integer.parseInt(args[2]) > 0) {
+            renderSphereSet(Integer.parseInt(args[2]), random, renderer);
+        }
+
+        // Szenengraph eines Human vor und nach dem Auflösen der Transformationsgruppen
+        Material humanMaterial = new PhongMaterial(new ConstantColor(white), new ConstantColor(white),
+                new ConstantColor(black), 0);
+        SceneFlattener flattener = new SceneFlattener();
+        flattener.flatten(new Human(humanMaterial, new Human.Pose(20, 30, -20, 10, 15, -15, -10, -5)));
+        System.out.println("Knoten Human: " + flattener.getNodesBefore() + " vorher, "
+                + flattener.getNodesAfter() + " nach SceneFlattener");
+        Human capsuleHuman = new Human(humanMaterial, new Human.Pose(20, 30, -20, 10, 15, -15, -10, -5),
+                BodyStyle.CAPSULES);
+        System.out.println("Knoten Human aus Kapseln: " + SceneFlattener.countNodes(capsuleHuman));
+    }
+
+    /*
+     * Rendert count Kugeln auf einer Scheibe mit dem Radius der größten Szene oben. Die Kugeln
+     * liegen in einem SphereSet (primitive Arrays und eigene Hierarchie) statt in einzelnen
+     * Sphere-Objekten. Ausgegeben werden Bauzeit, Renderzeit und der belegte Heap.
+     */
+    private static void renderSphereSet(int count, Random random, TileRenderer renderer) {
+        final int width = 1920;
+        final int height = 1080;
+        double discRadius = 300.0;
+        Matrix cameraMatrix = Matrix.multiply(Matrix.rotation(xAxis, -40),
+                Matrix.translation(new Point(0, discRadius * -0.3, discRadius * 1.8)));
+        Camera camera = new Camera(70, width, height, cameraMatrix);
+
+        Material greenMaterial = new PhongMaterial(new ConstantColor(green), new ConstantColor(green),
+                new ConstantColor(white), 50);
+        Material groundMaterial = new PhongMaterial(new ConstantColor(white), new ConstantColor(white),
+                new ConstantColor(black), 0);
+
+        long startBuild = System.currentTimeMillis();
+        SphereSet spheres = new SphereSet(count);
+        for (int i = 0; i < count; i++) {
+            double angle = random.nextDouble() * 2 * Math.PI;
+            double radius = Math.sqrt(random.nextDouble()) * discRadius;
+            spheres.add(Math.cos(angle) * radius, 2.5, Math.sin(angle) * radius, 0.5, greenMaterial);
         }
+        spheres.build();
+        long buildTime = System.currentTimeMillis() - startBuild;
+
+        Group group = new Group(Matrix.identity());
+        group.add(spheres);
+        group.add(new DiscXZ(new Point(0, 1, 0), discRadius + 1, groundMaterial));
+        ArrayList<DirectLight> lightList = new ArrayList<>();
+        lightList.add(new DirectionalLight(direction(-1, -1, -0.8), color(0.8, 0.8, 0.8)));
+        Scene scene = new Scene(group, lightList).compile();
+
+        long startRender = System.currentTimeMillis();
+        Image image = new Image(width, height);
+        renderer.supersample(image, 1, new Raytracer(camera, scene, new Color(0.1, 0.1, 0.1)));
+        image.write("doc/H_beschleunigung-sphereset-" + count + ".png");
+        long renderTime = System.currentTimeMillis() - startRender;
+
+        Runtime runtime = Runtime.getRuntime();
+        long usedMb = (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024);
+        System.out.println("SphereSet mit " + count + " Kugeln: Bauzeit " + buildTime + " ms, Rendern "
+                + renderTime + " ms, Heap " + usedMb + " MB");
     }
 }
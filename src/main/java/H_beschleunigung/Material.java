@@ -1,6 +1,7 @@
 package H_beschleunigung;
 
 import lib_cgtools.*;
+import static lib_cgtools.Vector.*;
 
 /*
  * Diese Schnittstelle definiert die grundlegenden Methoden für Materialien, die
@@ -41,4 +42,21 @@ public interface Material {
      * in der Richtung des reflektierten Strahls.
      */
     public Color getReflectionFraction(Direction to_viewer, Direction reflection, Hit hit);
+
+    /*
+     * BRDF * cos(theta) für Licht, das aus der Richtung to_light eintrifft. Wird gebraucht, wenn
+     * Lichtquellen direkt gesampelt werden (AreaLights). Materialien ohne eigene Umsetzung
+     * liefern schwarz und werden nur über getReflectionDirection beleuchtet.
+     */
+    public default Color evaluateReflection(Direction to_viewer, Direction to_light, Hit hit) {
+        return black;
+    }
+
+    /*
+     * Dichte (bezogen auf den Raumwinkel), mit der getReflectionDirection die Richtung direction
+     * wählt. 0 bei Materialien, deren Reflexionsrichtung nicht zufällig ist (z.B. Spiegel).
+     */
+    public default double reflectionPdf(Direction to_viewer, Direction direction, Hit hit) {
+        return 0;
+    }
 }
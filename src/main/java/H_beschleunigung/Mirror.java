@@ -15,7 +15,7 @@ public class Mirror implements Material {
     }
 
     /** 
-     * sowie in PhongMaterial Methode calculateSpecular berechnen wir die Reflektion, 
+     * sowie in PhongMaterial Methode calculateDirectLightReflection (spekularer Anteil) berechnen wir die Reflektion, 
      * aber nur vom Strahl der Kamera
      * Normalisieren wird nicht gebraucht, da es in generateRay schon gemacht wird
     */
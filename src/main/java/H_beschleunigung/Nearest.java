@@ -0,0 +1,112 @@
+package H_beschleunigung;
+
+import java.util.Arrays;
+
+/*
+ * Merkt sich beim Suchen des nächsten Treffers die bisher nächste Form und ihren
+ * Strahlparameter. Erst am Ende wird mit hit() der vollständige Treffer erzeugt, sodass
+ * Trefferpunkt, Normale und Texturkoordinaten nur für den Gewinner berechnet werden.
+ * Zusammengesetzte Formen liefern ihren Treffer bereits vollständig, er wird dann übernommen.
+ *
+ * Sobald ein Treffer gefunden ist, sinkt die Obergrenze limit() auf diesen Treffer und weitere
+ * Formen werden nur noch bis dorthin getestet. Was dahinter liegt, kann so früh verworfen werden.
+ *
+ * Die Objekte werden pro Thread wiederverwendet: acquire() liefert eines für die aktuelle
+ * Schachtelungstiefe (z.B. eine FlatBVH in einer Group), release() gibt es wieder frei.
+ */
+final class Nearest {
+
+    private static final ThreadLocal<Pool> pools = ThreadLocal.withInitial(Pool::new);
+
+    private final Pool pool;
+    private Ray ray;        // Der Strahl, für den gesucht wird
+    private double limit;   // Obergrenze: der bisher nächste Treffer oder das Ende des Strahls
+    Shape shape;            // Die bisher nächste Form (null, solange nichts getroffen wurde)
+    double t;               // Ihr Strahlparameter
+    private Hit hit;        // Bereits erzeugter Treffer, falls die nächste Form ein Aggregat ist
+
+    private Nearest(Pool pool) {
+        this.pool = pool;
+    }
+
+    // Beginnt die Suche für den Strahl, Treffer hinter tMax zählen nicht
+    static Nearest acquire(Ray ray, double tMax) {
+        Nearest nearest = pools.get().acquire();
+        nearest.ray = ray;
+        nearest.limit = tMax;
+        nearest.shape = null;
+        nearest.t = Shape.MISS;
+        nearest.hit = null;
+        return nearest;
+    }
+
+    void release() {
+        ray = null;
+        hit = null;
+        shape = null;
+        pool.release();
+    }
+
+    /*
+     * Testet eine Form und übernimmt sie, wenn sie näher liegt als der bisherige Treffer.
+     * Gibt true zurück, wenn sich der nächste Treffer geändert hat.
+     */
+    boolean test(Shape candidate) {
+        if (candidate.isAggregate()) {
+            Hit candidateHit = candidate.intersect(ray, limit);
+            if (candidateHit != null && offer(candidate, candidateHit.t())) {
+                hit = candidateHit;
+                return true;
+            }
+            return false;
+        }
+        if (offer(candidate, candidate.intersectT(ray, limit))) {
+            hit = null;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean offer(Shape candidate, double candidateT) {
+        if (!Double.isNaN(candidateT) && (shape == null || candidateT < t)) {
+            shape = candidate;
+            t = candidateT;
+            if (t < limit) {
+                limit = t;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    double limit() {
+        return limit;
+    }
+
+    Hit hit() {
+        if (shape == null) {
+            return null;
+        }
+        return hit != null ? hit : shape.hitAt(ray, t);
+    }
+
+    // Ein Objekt pro Schachtelungstiefe, wie die Traversal-Objekte in UniformGrid
+    private static final class Pool {
+        private Nearest[] items = new Nearest[4];
+        private int depth;
+
+        Nearest acquire() {
+            if (depth == items.length) {
+                items = Arrays.copyOf(items, 2 * items.length);
+            }
+            if (items[depth] == null) {
+                items[depth] = new Nearest(this);
+            }
+            return items[depth++];
+        }
+
+        void release() {
+            depth--;
+        }
+    }
+}
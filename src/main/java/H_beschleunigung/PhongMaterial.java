@@ -40,42 +40,36 @@ public class PhongMaterial implements Material {
     /*
      * Berechnet die Reflexion des direkten Lichts von einer Lichtquelle.
      * Es wird sowohl die diffuse als auch die spekulare Reflexion berücksichtigt.
+     * Die Rechnung läuft komponentenweise, erzeugt wird nur die Ergebnisfarbe.
      */
     @Override
     public Color calculateDirectLightReflection(Direction to_viewer, Hit hit, DirectLight light) {
-        Direction normale_von_hit = hit.normalV(); // Die Normale am Punkt des Treffers
-        Direction lightDirection = light.directionToSource(hit.hit()); // Lichtquelle zum Trefferspunkt
+        Direction n = hit.normalV(); // Die Normale am Punkt des Treffers
+        Direction l = light.directionToSource(hit.hit()); // Lichtquelle zum Trefferspunkt
         Color lightColor = light.incomingLight(hit.hit()); // Die Farbe und Intensität des Lichts
-        Direction normalized_to_viewer = normalize(to_viewer); // Der normalisierte Vektor zum Betrachter
 
-        Color diffuse = calculateDiffuse(normale_von_hit, lightDirection, lightColor, hit); // Diffuse Reflexion
-        Color specular = calculateSpecular(lightDirection, normale_von_hit, normalized_to_viewer, lightColor, hit); // Spekulare Reflexion
-
-        return add(diffuse, specular); // Diffuse und spekulare Reflexion kombinieren
-    }
-    
-    /*
-     * Berechnet die diffuse Reflexion. Dieser Term berücksichtigt den Winkel zwischen
-     * der Normalen des Treffers und dem Lichtvektor.
-     */
-    private Color calculateDiffuse(Direction normale_von_hit, Direction lightDirection, Color lightColor, Hit hit) {
-        double cos_angle = Math.max(0, dotProduct(normale_von_hit, lightDirection)); // Cosinus des Winkels zwischen Normalen und Lichtrichtung
-
-        Color diffuse = multiply(kDiffuse.getColor(hit.u(), hit.v()), lightColor); // Materialfarbe multipliziert mit Lichtfarbe
-
-        return multiply(diffuse, cos_angle); // Diffuse Reflexion unter Berücksichtigung des Winkels
-    }
-
-    /*
-     * Berechnet die spekulare Reflexion. Dieser Term berücksichtigt den Glanz-Exponent
-     * und den reflektierten Vektor sowie die Richtung zum Betrachter.
-     */
-    private Color calculateSpecular(Direction lightDirection, Direction normale_von_hit, Direction normalized_to_viewer, Color lightColor, Hit hit) {
-        Direction reflectedDirection = subtract(lightDirection, multiply(2 * dotProduct(lightDirection, normale_von_hit), normale_von_hit)); // Reflektierter Vektor
-
-        double skalarProduct = Math.pow(Math.max(0, dotProduct(reflectedDirection, normalized_to_viewer)), shininess); // Spekulare Reflexion basierend auf dem Winkel und dem Glanz-Exponent
-
-        return multiply(skalarProduct, multiply(lightColor, kSpecular.getColor(hit.u(), hit.v()))); // Spekulare Reflexion mit Lichtfarbe und Materialfarbe kombinieren
+        // Der normalisierte Vektor zum Betrachter
+        double viewerLength = Math.sqrt(to_viewer.x() * to_viewer.x() + to_viewer.y() * to_viewer.y() + to_viewer.z() * to_viewer.z());
+        double vx = to_viewer.x() / viewerLength;
+        double vy = to_viewer.y() / viewerLength;
+        double vz = to_viewer.z() / viewerLength;
+
+        // Diffuse Reflexion: Materialfarbe mal Lichtfarbe mal Cosinus zwischen Normale und Lichtrichtung
+        double nDotL = n.x() * l.x() + n.y() * l.y() + n.z() * l.z();
+        double cos_angle = Math.max(0, nDotL);
+        Color kd = kDiffuse.getColor(hit.u(), hit.v());
+
+        // Spekulare Reflexion: reflektierter Lichtvektor gegen die Richtung zum Betrachter
+        double rx = l.x() - 2 * nDotL * n.x();
+        double ry = l.y() - 2 * nDotL * n.y();
+        double rz = l.z() - 2 * nDotL * n.z();
+        double skalarProduct = Math.pow(Math.max(0, rx * vx + ry * vy + rz * vz), shininess);
+        Color ks = kSpecular.getColor(hit.u(), hit.v());
+
+        return new Color( // Diffuse und spekulare Reflexion kombinieren
+            kd.r() * lightColor.r() * cos_angle + skalarProduct * (lightColor.r() * ks.r()),
+            kd.g() * lightColor.g() * cos_angle + skalarProduct * (lightColor.g() * ks.g()),
+            kd.b() * lightColor.b() * cos_angle + skalarProduct * (lightColor.b() * ks.b()));
     }
 
     /*
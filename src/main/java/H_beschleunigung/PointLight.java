@@ -56,8 +56,7 @@ public class PointLight implements DirectLight {
 
         // Prüft, ob der Schattenstrahl mit einem Objekt in der Szene kollidiert.
         // Wenn kein Treffer gefunden wurde, bedeutet dies, dass das Licht sichtbar ist.
-        Hit shadowHit = shapes.intersect(shadowRay);
-        return shadowHit == null; // Rückgabe true, wenn kein Treffer gefunden wurde (Licht sichtbar)
+        return !shapes.occluded(shadowRay); // Rückgabe true, wenn nichts den Strahl blockiert (Licht sichtbar)
     }
 
     /*
@@ -70,4 +69,18 @@ public class PointLight implements DirectLight {
         double epsilon = 1e-6; // Ein kleiner Wert, um numerische Probleme zu vermeiden
         return new Ray(position, toSource, epsilon, length(subtract(ligthPosition, position))); // Gibt den Schattenstrahl zurück
     }
+
+    /*
+     * Gibt die Position des Lichts zurück.
+     */
+    public Point getPosition() {
+        return ligthPosition;  // Gibt die Position des Lichts zurück
+    }
+
+    /*
+     * Gibt die Farbe des Lichts zurück.
+     */
+    public Color getlightColor() {
+        return lightColor;  // Gibt die Farbe des Lichts zurück
+    }
 }
@@ -3,8 +3,66 @@ package H_beschleunigung;
 import lib_cgtools.*;
 import static lib_cgtools.Vector.*;
 
+/*
+ * Ein Strahl origin + t * direction mit gültigem Bereich [tMin, tMax].
+ *
+ * Für den Boxtest (BoundingBox.entry, FlatBVH) werden beim Erzeugen die Kehrwerte der
+ * Richtungskomponenten und ihre Vorzeichen einmal vorberechnet. Der Slab-Test kommt damit ohne
+ * Divisionen aus, und über das Vorzeichen ist vorab bekannt, welche Seite der Box der Strahl
+ * zuerst erreicht.
+ */
+public final class Ray {
 
-public record Ray(Point origin, Direction direction, double tMin, double tMax) {
+    private final Point origin;
+    private final Direction direction;
+    private final double tMin;
+    private final double tMax;
+
+    public final double invX, invY, invZ;    // 1 / direction (bei 0 unendlich)
+    public final int signX, signY, signZ;    // 1, wenn die Komponente negativ ist, sonst 0
+
+    public Ray(Point origin, Direction direction, double tMin, double tMax) {
+        this.origin = origin;
+        this.direction = direction;
+        this.tMin = tMin;
+        this.tMax = tMax;
+        this.invX = 1.0 / direction.x();
+        this.invY = 1.0 / direction.y();
+        this.invZ = 1.0 / direction.z();
+        this.signX = invX < 0 ? 1 : 0;
+        this.signY = invY < 0 ? 1 : 0;
+        this.signZ = invZ < 0 ? 1 : 0;
+    }
+
+    // Kopie mit anderem Ursprung oder tMax, die vorberechneten Werte werden übernommen
+    private Ray(Ray ray, Point origin, double tMax) {
+        this.origin = origin;
+        this.direction = ray.direction;
+        this.tMin = ray.tMin;
+        this.tMax = tMax;
+        this.invX = ray.invX;
+        this.invY = ray.invY;
+        this.invZ = ray.invZ;
+        this.signX = ray.signX;
+        this.signY = ray.signY;
+        this.signZ = ray.signZ;
+    }
+
+    public Point origin() {
+        return origin;
+    }
+
+    public Direction direction() {
+        return direction;
+    }
+
+    public double tMin() {
+        return tMin;
+    }
+
+    public double tMax() {
+        return tMax;
+    }
 
     /*
      * Die Methode pointAt berechnet den Punkt auf dem Strahl, der dem Parameter t entspricht.
@@ -14,6 +72,20 @@ public record Ray(Point origin, Direction direction, double tMin, double tMax) {
         return add(origin, multiply(t, direction));
     }
 
+    /*
+     * Derselbe Strahl, der aber schon bei tMax endet (z.B. beim bisher nächsten Treffer).
+     */
+    public Ray withTMax(double tMax) {
+        return new Ray(this, origin, tMax);
+    }
+
+    /*
+     * Derselbe Strahl mit verschobenem Ursprung (z.B. nach einer reinen Translation).
+     */
+    public Ray withOrigin(Point origin) {
+        return new Ray(this, origin, tMax);
+    }
+
     /*
      * Die Methode isValid prüft, ob der Parameter t im gültigen Bereich [tMin, tMax] liegt.
      * Ein gültiger Wert für t bedeutet, dass der Strahl innerhalb des Bereichs durch den Vektor verläuft.
@@ -21,4 +93,9 @@ public record Ray(Point origin, Direction direction, double tMin, double tMax) {
     public boolean isValid(double t) {
         return (t >= tMin && t <= tMax);  // Gibt true zurück, wenn t im gültigen Bereich liegt
     }
+
+    @Override
+    public String toString() {
+        return "Ray[origin=" + origin + ", direction=" + direction + ", tMin=" + tMin + ", tMax=" + tMax + "]";
+    }
 }
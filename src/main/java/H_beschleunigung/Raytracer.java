@@ -1,5 +1,6 @@
 package H_beschleunigung;
 
+import static lib_cgtools.Random.random;
 import static lib_cgtools.Vector.*;
 
 import lib_cgtools.*;
@@ -7,34 +8,96 @@ import lib_cgtools.*;
 /*
  * Diese Klasse ist für das Raytracing verantwortlich. Sie sendet Strahlen von der Kamera aus und berechnet die Beleuchtung der getroffenen Objekte in der Szene.
  * Der Raytracer berechnet die direkte Beleuchtung, Umgebungsbeleuchtung, Reflexionen und Emissionen für jedes Pixel.
+ *
+ * Pfade werden mit Russian Roulette beendet: Ab der Tiefe minDepth wird ein Pfad nur noch mit
+ * der Wahrscheinlichkeit p weiterverfolgt, die dem größten Kanal seines bisherigen Durchsatzes
+ * (Produkt der Reflexionsanteile) entspricht. Überlebende Pfade werden mit 1 / p gewichtet, der
+ * Erwartungswert bleibt dadurch unverändert. Dunkle Pfade enden so früh, helle Interreflexionen
+ * laufen weiter, höchstens bis maxDepth.
+ *
+ * Leuchtende Formen der Szene (Scene.areaLights) werden an jedem Treffer zusätzlich direkt
+ * gesampelt (Next-Event Estimation): ein Punkt auf einer Lichtquelle wird gewählt und mit einem
+ * Schattenstrahl getestet. Trifft später der reflektierte Strahl dieselbe Lichtquelle, wurde ihr
+ * Licht auf zwei Wegen geschätzt. Beide Beiträge werden mit Multiple Importance Sampling
+ * (Power-Heuristik, Veach) gewichtet, sodass sich die Gewichte zu 1 ergänzen. Kleine
+ * Lichtquellen, die ein reflektierter Strahl nur selten trifft, werden so fast immer über den
+ * Schattenstrahl gefunden, große über die Reflexion.
+ *
+ * Punktlichter werden in einem LightTree organisiert. Gibt es mehr als lightSamples davon, werden
+ * pro Treffer nur lightSamples Lichter aus dem Baum gewählt (mit Wahrscheinlichkeit nach ihrer
+ * geschätzten Wichtigkeit) und ihr Beitrag durch lightSamples * Wahrscheinlichkeit geteilt. Der
+ * Aufwand pro Treffer wächst dann nur noch logarithmisch mit der Anzahl der Lichter.
  */
 public class Raytracer implements Sampler {
 
     private Camera camera;  // Kamera, die die Strahlen erzeugt
     private Color bgColor;  // Hintergrundfarbe, falls kein Treffer gefunden wird
     private Scene scene;    // Die Szene, in der das Raytracing stattfindet
+    private int minDepth;   // Bis zu dieser Tiefe wird jeder Pfad verfolgt, danach Russian Roulette
+    private int maxDepth;   // Maximale Anzahl Strahlen pro Pfad
+    private LightTree lightTree;  // Punktlichter der Szene, alle anderen Lichter liegen in getOthers()
+    private int lightSamples;     // Anzahl der Punktlichter, die pro Treffer getestet werden
+
+    public static final int DEFAULT_MIN_DEPTH = 3;
+    public static final int DEFAULT_MAX_DEPTH = 16;
+    public static final int DEFAULT_LIGHT_SAMPLES = 4;
 
     // Konstruktor für den Raytracer
     public Raytracer(Camera camera, Scene scene, Color bgcolor) {
+        this(camera, scene, bgcolor, DEFAULT_MIN_DEPTH, DEFAULT_MAX_DEPTH);
+    }
+
+    /*
+     * minDepth: Tiefe, ab der Pfade per Russian Roulette beendet werden können (1 = schon nach
+     * dem ersten Treffer). maxDepth: harte Obergrenze für die Länge eines Pfades. Mit
+     * minDepth >= maxDepth gibt es kein Russian Roulette, der Raytracer verhält sich dann wie mit
+     * fester Rekursionstiefe maxDepth. Beide müssen mindestens 1 sein.
+     */
+    public Raytracer(Camera camera, Scene scene, Color bgcolor, int minDepth, int maxDepth) {
+        this(camera, scene, bgcolor, minDepth, maxDepth, DEFAULT_LIGHT_SAMPLES);
+    }
+
+    /*
+     * lightSamples: Anzahl der Punktlichter, die pro Treffer aus dem LightTree gewählt werden
+     * (mindestens 1). Hat die Szene nicht mehr Punktlichter, werden wie bisher alle getestet. Der
+     * Baum wird hier einmal aus scene.lights() gebaut.
+     */
+    public Raytracer(Camera camera, Scene scene, Color bgcolor, int minDepth, int maxDepth, int lightSamples) {
+        if (minDepth < 1 || maxDepth < 1) {
+            throw new IllegalArgumentException("minDepth and maxDepth must be at least 1");
+        }
+        if (lightSamples < 1) {
+            throw new IllegalArgumentException("lightSamples must be at least 1");
+        }
         this.camera = camera;
         this.scene = scene;
         this.bgColor = bgcolor;
+        this.minDepth = minDepth;
+        this.maxDepth = maxDepth;
+        this.lightTree = new LightTree(scene.lights());
+        this.lightSamples = lightSamples;
     }
 
     @Override
     // Diese Methode wird aufgerufen, um die Farbe eines bestimmten Pixels zu berechnen
     public Color getColor(double x, double y) {
         Ray ray = camera.generateRay(x, y);  // Generiere den Sichtstrahl für das Pixel
-        return this.getRadiance(ray, 4);  // Berechne die Radiance des Strahls (maximale Rekursionstiefe = 4)
+        return this.getRadiance(ray, 1, white, null, 0);  // Berechne die Radiance des Strahls (Tiefe 1, voller Durchsatz)
     }
 
-    // Diese Methode berechnet die Radiance eines Strahls unter Berücksichtigung der Beleuchtung
-    private Color getRadiance(Ray ray, int trace_depth) {
-        if (trace_depth == 0) {
+    /*
+     * Diese Methode berechnet die Radiance eines Strahls unter Berücksichtigung der Beleuchtung.
+     * depth ist die Nummer des Strahls im Pfad, throughput der Durchsatz bis zu diesem Strahl.
+     * from ist der Treffer, an dem der Strahl reflektiert wurde (null für Kamerastrahlen),
+     * reflectionPdf die Dichte, mit der das Material dort die Richtung gewählt hat (0 für
+     * Kamerastrahlen und nicht zufällige Reflexionen, dann ohne MIS-Gewicht).
+     */
+    private Color getRadiance(Ray ray, int depth, Color throughput, Hit from, double reflectionPdf) {
+        if (depth > maxDepth) {
             return black;  // Abbruchbedingung: Keine Rekursion, wenn die maximale Tiefe erreicht ist
         }
 
-        Color totalDirectLight = black;  // Standardwert für direkte Beleuchtung (schwarz)
+        Vec3 total = new Vec3();  // Summe aller Beiträge, wird ohne Zwischenfarben aufaddiert
 
         // Bestimme den nächsten Treffer (Hit) des Strahls mit der Szene
         Hit closestHit = scene.shapes().intersect(ray);  // Finde das nächste Objekt, auf das der Strahl trifft
@@ -50,46 +113,129 @@ public class Raytracer implements Sampler {
         // Berechnung der Umgebungsbeleuchtung für den Treffer
         Color ambient = material.calculateAmbientReflection(bgColor, closestHit);
 
-        // Iteriere über alle Lichtquellen in der Szene
-        for (DirectLight light : scene.lights()) {
-            // Erzeuge einen Schattenstrahl, der von der Lichtquelle zum getroffenen Punkt geht
-            Ray shadowRay = light.shadowRay(closestHit.hit());
-            // Überprüfe, ob der Schattenstrahl ein anderes Objekt trifft
-            Hit shadowHit = scene.shapes().intersect(shadowRay);
-
-            // Falls der Schattenstrahl kein Objekt trifft, wird Licht auf das Objekt geworfen
-            if (shadowHit == null) {
-                // Berechne die direkte Beleuchtung des getroffenen Objekts durch diese Lichtquelle
-                totalDirectLight = add(totalDirectLight, material.calculateDirectLightReflection(ray.direction(), closestHit, light));
+        // Lichtquellen ohne Ort (z.B. DirectionalLight) werden alle einzeln getestet
+        for (DirectLight light : lightTree.getOthers()) {
+            addDirectLight(total, ray, closestHit, light, 1);
+        }
+
+        // Punktlichter: bei wenigen alle, sonst lightSamples Lichter aus dem LightTree
+        if (lightTree.size() <= lightSamples) {
+            for (DirectLight light : lightTree.getLights()) {
+                addDirectLight(total, ray, closestHit, light, 1);
             }
+        } else {
+            for (int i = 0; i < lightSamples; i++) {
+                LightTree.Choice choice = lightTree.sample(closestHit.hit(), closestHit.normalV(), random());
+                addDirectLight(total, ray, closestHit, choice.light(), lightSamples * choice.probability());
+            }
+        }
+
+        // Direktes Sampeln der leuchtenden Formen (nicht am unendlich fernen Hintergrund)
+        if (!scene.areaLights().isEmpty() && Double.isFinite(closestHit.t())) {
+            total.add(sampleAreaLight(ray, closestHit));
         }
 
         // Berechnung der Emission (Licht, das vom Objekt selbst ausgeht)
         Color emission = material.getEmission(ray.direction(), closestHit);
 
-        // Berechnung der Reflexion
-        Color reflection = black;
+        // Hätte auch das direkte Sampeln diese Lichtquelle finden können, nur mit MIS-Gewicht
+        if (reflectionPdf > 0 && !emission.equals(black)) {
+            double lightPdf = scene.areaLights().pdf(from.hit(), from.normalV(), closestHit);
+            emission = multiply(powerHeuristic(reflectionPdf, lightPdf), emission);
+        }
+
+        // Berechnung der Reflexion. Die Zahlen des Materials beginnen wie beim direkten Sampeln
+        // eine neue Gruppe der SampleSequence.
+        Random.align();
         Direction reflectedDirection = material.getReflectionDirection(ray.direction(), closestHit);
 
         // Wenn keine Reflexion vorhanden ist, return die Summe der direkten Beleuchtung und Umgebungsbeleuchtung
         if (reflectedDirection == null) {
-            return add(totalDirectLight, ambient, emission);
+            return total.add(ambient).add(emission).toColor();
         }
 
         // Berechne den Reflexionsanteil
         Color reflectFraction = material.getReflectionFraction(ray.direction(), reflectedDirection, closestHit);
-        
-        // Wenn der Reflexionsanteil nicht schwarz ist, führe Rekursion für die Reflexion durch
-        if (!reflectFraction.equals(black)) {
-            Ray reflectedRay = new Ray(closestHit.hit(), reflectedDirection, 1e-6, Double.POSITIVE_INFINITY);
-            // Berechne die Beleuchtung durch Reflexion unter Verringerung der Rekursionstiefe
-            reflection = multiply(reflectFraction, getRadiance(reflectedRay, trace_depth - 1));
-        }
 
         // Die Gesamtbeleuchtung besteht aus:
         // - Umgebungsbeleuchtung
         // - Direkter Beleuchtung von Lichtquellen
         // - Reflexionen
-        return add(totalDirectLight, ambient, reflection, emission);
+        total.add(ambient);
+
+        // Wenn der Reflexionsanteil nicht schwarz ist, führe Rekursion für die Reflexion durch
+        if (!reflectFraction.equals(black) && depth < maxDepth) {
+            Color weight = reflectFraction;
+            Color nextThroughput = multiply(throughput, reflectFraction);
+
+            // Russian Roulette: mit Wahrscheinlichkeit 1 - p beenden, sonst mit 1 / p gewichten
+            if (depth >= minDepth) {
+                double p = Math.min(1, Math.max(nextThroughput.r(), Math.max(nextThroughput.g(), nextThroughput.b())));
+                if (random() >= p) {
+                    return total.add(emission).toColor();
+                }
+                weight = divide(weight, p);
+                nextThroughput = divide(nextThroughput, p);
+            }
+
+            Ray reflectedRay = new Ray(closestHit.hit(), reflectedDirection, 1e-6, Double.POSITIVE_INFINITY);
+            double nextPdf = scene.areaLights().isEmpty() ? 0
+                : material.reflectionPdf(ray.direction(), reflectedDirection, closestHit);
+            // Berechne die Beleuchtung durch Reflexion mit dem nächsten Strahl des Pfades
+            total.addProduct(weight, getRadiance(reflectedRay, depth + 1, nextThroughput, closestHit, nextPdf));
+        }
+        return total.add(emission).toColor();
+    }
+
+    /*
+     * Addiert die direkte Beleuchtung durch light zu total, falls der Schattenstrahl frei ist.
+     * probability ist die Wahrscheinlichkeit, mit der das Licht gewählt wurde (1 = immer).
+     */
+    private void addDirectLight(Vec3 total, Ray ray, Hit hit, DirectLight light, double probability) {
+        // Erzeuge einen Schattenstrahl, der vom getroffenen Punkt zur Lichtquelle geht
+        Ray shadowRay = light.shadowRay(hit.hit());
+
+        // Falls der Schattenstrahl von keinem Objekt blockiert wird, wird Licht auf das Objekt geworfen
+        if (!scene.shapes().occluded(shadowRay)) {
+            total.addScaled(1 / probability, hit.material().calculateDirectLightReflection(ray.direction(), hit, light));
+        }
+    }
+
+    /*
+     * Next-Event Estimation: wählt einen Punkt auf einer der leuchtenden Formen und gibt
+     * BRDF * cos * Emission / Dichte zurück, falls der Punkt vom Treffer aus sichtbar ist,
+     * gewichtet mit der Power-Heuristik gegen die Reflexionsrichtung des Materials.
+     */
+    private Color sampleAreaLight(Ray ray, Hit hit) {
+        // Das Zahlenpaar für den Punkt auf der Lichtquelle beginnt eine neue Gruppe der
+        // SampleSequence (Random.align), damit es in jeder Tiefe gemeinsam geschichtet ist. Die
+        // Wahl der Lichtquelle folgt in derselben Gruppe.
+        Random.align();
+        double u1 = random();
+        double u2 = random();
+        LightSample light = scene.areaLights().sample(hit.hit(), hit.normalV(), random(), u1, u2);
+        if (light == null || light.radiance().equals(black)) {
+            return black;
+        }
+        Material material = hit.material();
+        Color reflection = material.evaluateReflection(ray.direction(), light.direction(), hit);
+        if (reflection.equals(black)) {
+            return black;
+        }
+
+        // Der Schattenstrahl endet kurz vor der Lichtquelle. Für den Hintergrund bleibt er endlich,
+        // da er sonst vom Hintergrund selbst blockiert würde.
+        double tMax = Double.isInfinite(light.distance()) ? Double.MAX_VALUE : light.distance() * (1 - 1e-6);
+        if (scene.shapes().occluded(new Ray(hit.hit(), light.direction(), 1e-6, tMax))) {
+            return black;
+        }
+
+        double weight = powerHeuristic(light.pdf(), material.reflectionPdf(ray.direction(), light.direction(), hit));
+        return multiply(weight / light.pdf(), multiply(reflection, light.radiance()));
+    }
+
+    // Gewicht der Strategie mit der Dichte a gegenüber der mit der Dichte b (Exponent 2)
+    private static double powerHeuristic(double a, double b) {
+        return a * a / (a * a + b * b);
     }
 }
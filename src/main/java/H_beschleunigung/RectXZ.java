@@ -5,8 +5,9 @@ import static lib_cgtools.Vector.*;
 
 import lib_cgtools.*; 
 
-/* A Shape representing a 2D rectangle in a X-Z-plane in 3D, facing upwards (Y direction) */
-public class RectXZ implements Shape {
+/* A Shape representing a 2D rectangle in a X-Z-plane in 3D, facing upwards (Y direction).
+   With an Emitter as material it is sampled directly as a light source (AreaLight). */
+public class RectXZ implements AreaLight {
 
     private Point anchor; 
     private double x_size_half, z_size_half;
@@ -33,6 +34,12 @@ public class RectXZ implements Shape {
         boundingBox = new BoundingBox(p_min, p_max);
     }
 
+    // Verschieben und gleichmäßiges Skalieren ändern nur Ankerpunkt und Größe
+    @Override
+    public Shape bake(double scale, Direction offset) {
+        return new RectXZ(add(multiply(scale, anchor), offset), scale * 2 * x_size_half, scale * 2 * z_size_half, material);
+    }
+
     @Override
     public BoundingBox bounds() {
         return boundingBox;
@@ -40,22 +47,35 @@ public class RectXZ implements Shape {
 
     @Override
     public Hit intersect(Ray ray) {
+        double t = intersectT(ray);
+        return Double.isNaN(t) ? null : hitAt(ray, t);
+    }
+
+    // Nur der Strahlparameter, ohne Trefferpunkt und Texturkoordinaten
+    @Override
+    public double intersectT(Ray ray) {
         // Ray parallel to X-Z-plane? Then there is no hit. 
         if(isZero(ray.direction().y())) {
-            return null; 
+            return MISS; 
         }
         // calculate hitpoint in plane
         double t = (anchor.y() - ray.origin().y()) / ray.direction().y(); 
         if(!ray.isValid(t)) {
-            return null; 
+            return MISS; 
         }
         // inside size of rectangle?
-        Point p = ray.pointAt(t); 
-        double x_l = Math.abs(p.x() - anchor.x()); 
-        double z_l = Math.abs(p.z() - anchor.z()); 
+        double x_l = Math.abs(ray.origin().x() + t * ray.direction().x() - anchor.x()); 
+        double z_l = Math.abs(ray.origin().z() + t * ray.direction().z() - anchor.z()); 
         if(x_l > x_size_half || z_l > z_size_half) {
-            return null; 
+            return MISS; 
         }
+        return t;
+    }
+
+    // Erzeugt den Treffer für den Strahlparameter t
+    @Override
+    public Hit hitAt(Ray ray, double t) {
+        Point p = ray.pointAt(t); 
         //Berechnung fuer Textur
         Direction rightDirection = subtract(p, anchor);
         double u = (rightDirection.x() + x_size_half) / (x_size_half * 2.0);
@@ -63,5 +83,59 @@ public class RectXZ implements Shape {
 
         return new Hit(t, p, direction(0,1,0), material, u, v); 
     }
-    
+
+    @Override
+    public boolean occluded(Ray ray) {
+        if(isZero(ray.direction().y())) {
+            return false;
+        }
+        double t = (anchor.y() - ray.origin().y()) / ray.direction().y();
+        if(!ray.isValid(t)) {
+            return false;
+        }
+        // inside size of rectangle? (ohne den Punkt als Objekt zu erzeugen)
+        double x_l = Math.abs(ray.origin().x() + t * ray.direction().x() - anchor.x());
+        double z_l = Math.abs(ray.origin().z() + t * ray.direction().z() - anchor.z());
+        return x_l <= x_size_half && z_l <= z_size_half;
+    }
+
+    /*
+       as a light source: uniformly distributed point on the rectangle,
+       solid angle density is distance^2 / (|cos| * area), both sides emit
+    */
+    @Override
+    public LightSample sample(Point p, Direction n, double u1, double u2) {
+        Point onLight = point(anchor.x() + (2 * u1 - 1) * x_size_half, anchor.y(), anchor.z() + (2 * u2 - 1) * z_size_half);
+        Direction toLight = subtract(onLight, p);
+        double distance = length(toLight);
+        Direction dir = divide(toLight, distance);
+        double pdf = pdf(distance * distance, dir.y());
+        return pdf == 0 ? null : AreaLight.emitted(this, p, dir, distance, pdf);
+    }
+
+    @Override
+    public double pdf(Point p, Direction n, Hit hit) {
+        Direction toLight = subtract(hit.hit(), p);
+        double distance2 = squaredLength(toLight);
+        return pdf(distance2, toLight.y() / Math.sqrt(distance2));
+    }
+
+    private double pdf(double distance2, double cos) {
+        cos = Math.abs(cos);
+        return cos < 1e-9 ? 0 : distance2 / (cos * 4 * x_size_half * z_size_half);
+    }
+
+    @Override
+    public boolean contains(Hit hit) {
+        double eps = 1e-6 * (1 + Math.max(x_size_half, z_size_half));
+        return hit.material() == material
+            && Math.abs(hit.hit().y() - anchor.y()) <= eps
+            && Math.abs(hit.hit().x() - anchor.x()) <= x_size_half + eps
+            && Math.abs(hit.hit().z() - anchor.z()) <= z_size_half + eps;
+    }
+
+    @Override
+    public Material getMaterial() {
+        return material;
+    }
 }
@@ -0,0 +1,12 @@
+package H_beschleunigung;
+
+/*
+ * Shapes, deren Bounding-Boxen nach einer Änderung der Transformationen darunter neu berechnet
+ * werden können, ohne die Hierarchie neu aufzubauen (Refit).
+ *
+ * Ein Refit läuft einmal von unten nach oben durch den Baum und kostet O(n). Die Aufteilung
+ * der Shapes auf die Knoten bleibt dabei gleich, nur die Boxen passen sich an.
+ */
+public interface Refittable {
+    public void refit();
+}
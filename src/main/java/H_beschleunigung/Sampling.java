@@ -0,0 +1,77 @@
+package H_beschleunigung;
+
+import lib_cgtools.*;
+import static lib_cgtools.Vector.*;
+
+/*
+ * Hilfsfunktionen zum Erzeugen zufälliger Richtungen. Die Zufallszahlen werden übergeben, damit
+ * dieselben Funktionen mit beliebigen Zahlenfolgen benutzt werden können.
+ */
+public final class Sampling {
+
+    private Sampling() {
+    }
+
+    /*
+     * Cosinus-gewichtete Richtung in der Halbkugel um die (normierte) Normale n. Die Richtung
+     * hat die Dichte cos(theta) / pi und ist bereits normiert.
+     *
+     * u1 und u2 aus [0, 1] werden zuerst auf einen Punkt der Einheitsscheibe abgebildet
+     * (Radius sqrt(u1), Winkel 2 pi u2) und dann auf die Halbkugel projiziert (Malley). Die
+     * Orthonormalbasis um n wird ohne Fallunterscheidung und ohne Wurzel gebildet
+     * (Duff et al., "Building an Orthonormal Basis, Revisited").
+     */
+    public static Direction cosineHemisphere(Direction n, double u1, double u2) {
+        double r = Math.sqrt(u1);
+        double phi = 2 * Math.PI * u2;
+        double x = r * Math.cos(phi);
+        double y = r * Math.sin(phi);
+        double z = Math.sqrt(Math.max(0, 1 - u1));
+
+        return toWorld(n, x, y, z);
+    }
+
+    /*
+     * Dichte von cosineHemisphere für eine Richtung d (bezogen auf den Raumwinkel).
+     */
+    public static double cosineHemispherePdf(Direction n, Direction d) {
+        double cos = dotProduct(n, d);
+        return cos > 0 ? cos / Math.PI : 0;
+    }
+
+    /*
+     * Gleichverteilte Richtung im Kegel um die (normierte) Achse mit dem halben Öffnungswinkel
+     * theta_max. Übergeben wird 1 - cos(theta_max) statt des Cosinus, damit auch sehr schmale
+     * Kegel (kleine, weit entfernte Kugeln) ohne Auslöschung funktionieren.
+     */
+    public static Direction uniformCone(Direction axis, double oneMinusCosMax, double u1, double u2) {
+        double oneMinusCos = u1 * oneMinusCosMax;
+        double sin = Math.sqrt(Math.max(0, oneMinusCos * (2 - oneMinusCos)));
+        double phi = 2 * Math.PI * u2;
+        return toWorld(axis, sin * Math.cos(phi), sin * Math.sin(phi), 1 - oneMinusCos);
+    }
+
+    /*
+     * Dichte von uniformCone, für alle Richtungen im Kegel gleich.
+     */
+    public static double uniformConePdf(double oneMinusCosMax) {
+        return 1 / (2 * Math.PI * oneMinusCosMax);
+    }
+
+    /*
+     * Überführt (x, y, z) aus der Basis um n (z zeigt in Richtung n) in Weltkoordinaten.
+     */
+    private static Direction toWorld(Direction n, double x, double y, double z) {
+        double sign = Math.copySign(1.0, n.z());
+        double a = -1 / (sign + n.z());
+        double b = n.x() * n.y() * a;
+        // Tangente t = (1 + sign x^2 a, sign b, -sign x), Bitangente s = (b, sign + y^2 a, -y)
+        double tx = 1 + sign * n.x() * n.x() * a, ty = sign * b, tz = -sign * n.x();
+        double sx = b, sy = sign + n.y() * n.y() * a, sz = -n.y();
+
+        return direction(
+            x * tx + y * sx + z * n.x(),
+            x * ty + y * sy + z * n.y(),
+            x * tz + y * sz + z * n.z());
+    }
+}
@@ -8,9 +8,72 @@ import java.util.List;
  * 
  * - Die Objekte in der Szene werden für die Berechnung von Strahlen-Schnittpunkten verwendet.
  * - Die Lichtquellen bestimmen, wie die Objekte beleuchtet werden.
+ * - Leuchtende Formen (Emitter) werden in areaLights gesammelt und vom Raytracer direkt
+ *   gesampelt. Ohne Angabe werden sie beim ersten Rendern aus shapes gesammelt und beim
+ *   Kompilieren aus den kompilierten Formen neu gesammelt. Der Konstruktor mit areaLights ist
+ *   nur dafür da, die Lichtquellen ausdrücklich vorzugeben; diese Vorgabe bleibt beim
+ *   Kompilieren erhalten.
  * 
  * Die Klasse ist als Java-Record implementiert, wodurch sie automatisch Konstruktor, Getter 
  * und Methoden wie equals() und hashCode() generiert.
  */
-public record Scene(Shape shapes, List<DirectLight> lights) {
+public record Scene(Shape shapes, List<DirectLight> lights, AreaLights areaLights) {
+
+    public Scene(Shape shapes, List<DirectLight> lights) {
+        this(shapes, lights, new AreaLights(shapes));
+    }
+
+    /*
+     * Erzeugt die kompilierte Form der Szene: alle Objekte unter shapes werden in eine
+     * flache, array-basierte Hüllkörper-Hierarchie (FlatBVH) überführt.
+     */
+    public Scene compile() {
+        return compiled(new FlatBVH(shapes));
+    }
+
+    /*
+     * Wie compile(), aber mit wählbarer Strategie für den Aufbau der Hierarchie
+     * (SAH für schnelle Strahltests, LBVH für schnellen Aufbau).
+     */
+    public Scene compile(BuildStrategy strategy) {
+        return compiled(new FlatBVH(shapes, strategy));
+    }
+
+    /*
+     * Löst Gruppen, die nur eine Transformation halten, auf (siehe SceneFlattener). Das Ergebnis
+     * ist flach und kann danach mit compile() kompiliert werden.
+     */
+    public Scene flatten() {
+        return compiled(new SceneFlattener().flatten(shapes));
+    }
+
+    /*
+     * Erzeugt eine kompilierte Szene mit einem gleichmäßigen Gitter (UniformGrid) statt einer
+     * Hierarchie. Lohnt sich bei gleichmäßig verteilten, ähnlich großen Objekten.
+     */
+    public Scene compileGrid() {
+        return compiled(new UniformGrid(shapes));
+    }
+
+    /*
+     * Szene mit den umgebauten Formen. Wurden die Lichtquellen aus shapes gesammelt, werden sie
+     * aus den neuen Formen gesammelt, eine ausdrückliche Vorgabe wird übernommen.
+     */
+    private Scene compiled(Shape compiledShapes) {
+        if (areaLights.getRoot() == shapes) {
+            return new Scene(compiledShapes, lights);
+        }
+        return new Scene(compiledShapes, lights, areaLights);
+    }
+
+    /*
+     * Passt nach einer Änderung von Transformationen (z.B. einer neuen Pose) alle Bounding-Boxen
+     * der Szene an, ohne die Hierarchie neu zu bauen. Die Lichtquellen werden danach neu gesammelt.
+     */
+    public void refit() {
+        if (shapes instanceof Refittable r) {
+            r.refit();
+        }
+        areaLights.update();
+    }
 }
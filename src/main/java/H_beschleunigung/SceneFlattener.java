@@ -0,0 +1,129 @@
+package H_beschleunigung;
+
+import java.util.ArrayList;
+
+/*
+ * Kompiliert einen Szenengraphen in eine flache Form. Gruppen, deren einzige Aufgabe eine
+ * Transformation ist (z.B. die Gelenke von Limb und Human),
+ * werden aufgelöst:
+ *
+ * - Ketten von Gruppen werden zu einer einzigen Transformation zusammengefasst.
+ * - Besteht diese nur aus Verschiebung und gleichmäßiger Skalierung, wird sie direkt in die
+ *   Parameter von Sphere, DiscXZ, RectXZ, Box, Capsule und Cylinder eingerechnet (Shape.bake).
+ * - Alle anderen Formen einer Gruppe kommen in eine Gruppe mit der zusammengefassten
+ *   Transformation, die direkt unter der neuen Wurzel hängt.
+ *
+ * Das Ergebnis ist eine Gruppe mit höchstens zwei Ebenen. Über ihre Formen wird anschließend
+ * eine Hüllkörper-Hierarchie gebaut (buildBvh), sie kann aber auch wie gewohnt mit
+ * Scene.compile() weiter kompiliert werden. Da die ursprünglichen Gruppen nicht mehr benutzt werden,
+ * wirken sich spätere Änderungen an ihnen (z.B. Human.setPose) nicht auf das Ergebnis aus.
+ * Für Animationen muss daher weiter der Refit der ursprünglichen Szene benutzt werden.
+ */
+public class SceneFlattener {
+
+    private int nodesBefore; // Knoten im Szenengraphen vor dem Auflösen
+    private int nodesAfter;  // Knoten im Ergebnis
+
+    /*
+     * Löst die Gruppen unter root auf und gibt die neue Wurzel zurück. Die Knoten werden vor
+     * dem Bau der Hierarchie gezählt, damit beide Zahlen dieselbe Art von Knoten enthalten.
+     */
+    public Shape flatten(Shape root) {
+        nodesBefore = countNodes(root);
+        Group result = new Group(Affine.identity);
+        collect(root, Affine.identity, result);
+        nodesAfter = countNodes(result);
+        result.buildBvh();
+        return result;
+    }
+
+    /*
+     * Sammelt shape in result ein. toRoot überführt die Koordinaten von shape in die der Wurzel.
+     */
+    private void collect(Shape shape, Affine toRoot, Group result) {
+        if (!(shape instanceof Group group)) {
+            add(shape, toRoot, result, null);
+            return;
+        }
+
+        Affine combined = toRoot.multiply(group.getTransform());
+        Group rest = null; // Formen dieser Gruppe, die sich nicht einrechnen lassen
+        for (Shape s : children(group)) {
+            if (s instanceof Group) {
+                collect(s, combined, result);
+            } else {
+                rest = add(s, combined, result, rest);
+            }
+        }
+        if (rest != null) {
+            result.add(rest);
+        }
+    }
+
+    /*
+     * Rechnet die Transformation in die Form ein, falls möglich, sonst kommt sie in die Gruppe
+     * rest (wird bei Bedarf angelegt und zurückgegeben).
+     */
+    private static Group add(Shape shape, Affine toRoot, Group result, Group rest) {
+        Shape baked = toRoot.isIdentity() ? shape : bake(shape, toRoot);
+        if (baked != null) {
+            result.add(baked);
+            return rest;
+        }
+        if (rest == null) {
+            rest = new Group(toRoot);
+        }
+        rest.add(shape);
+        return rest;
+    }
+
+    private static Shape bake(Shape shape, Affine transform) {
+        double scale = transform.uniformScale();
+        return Double.isNaN(scale) ? null : shape.bake(scale, transform.offset());
+    }
+
+    /*
+     * Die Formen einer Gruppe. Bereits gebaute Hierarchien (buildBvh) werden dabei wieder in
+     * ihre Formen zerlegt, da sich die Boxen durch das Auflösen ändern.
+     */
+    private static ArrayList<Shape> children(Group group) {
+        ArrayList<Shape> children = new ArrayList<>();
+        for (Shape s : group.getForms()) {
+            if (s instanceof BVHNode) {
+                FlatBVH.collect(s, children, children);
+            } else {
+                children.add(s);
+            }
+        }
+        return children;
+    }
+
+    /*
+     * Zählt alle Knoten des Szenengraphen: Gruppen, BVH-Knoten und Formen.
+     */
+    public static int countNodes(Shape shape) {
+        int count = 1;
+        if (shape instanceof Group group) {
+            for (Shape s : group.getForms()) {
+                count += countNodes(s);
+            }
+        } else if (shape instanceof BVHNode node) {
+            if (node.isLeaf()) {
+                for (Shape s : node.getShapes()) {
+                    count += countNodes(s);
+                }
+            } else {
+                count += countNodes(node.getLeft()) + countNodes(node.getRight());
+            }
+        }
+        return count;
+    }
+
+    public int getNodesBefore() {
+        return nodesBefore;
+    }
+
+    public int getNodesAfter() {
+        return nodesAfter;
+    }
+}
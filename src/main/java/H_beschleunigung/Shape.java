@@ -1,5 +1,7 @@
 package H_beschleunigung;
 
+import lib_cgtools.Direction;
+
 /*
  * Das Shape-Interface definiert die grundlegenden Operationen, die jedes geometrische Objekt (z.B. eine Kugel, Scheibe, etc.)
  * in der Szene implementieren muss, um mit dem Raytracing-System zu interagieren.
@@ -11,6 +13,56 @@ public interface Shape {
     // Falls ein Schnittpunkt gefunden wird, gibt sie das Hit-Objekt zurück.
     // Ansonsten wird null zurückgegeben.
     public Hit intersect(Ray ray);
+
+    // Rückgabewert von intersectT, wenn der Strahl das Objekt nicht trifft.
+    public static final double MISS = Double.NaN;
+
+    // Erste, günstige Phase der Schnittberechnung: liefert nur den Strahlparameter t des nächsten
+    // gültigen Treffers (oder MISS), ohne Trefferpunkt, Normale oder Texturkoordinaten zu berechnen.
+    // Beim Suchen des nächsten Treffers werden so nur für den Gewinner die Attribute berechnet.
+    public default double intersectT(Ray ray) {
+        Hit hit = intersect(ray);
+        return hit == null ? MISS : hit.t();
+    }
+
+    // Wie intersectT, aber Treffer hinter tMax (z.B. hinter dem bisher nächsten) zählen nicht.
+    // Da intersectT den nächsten gültigen Treffer liefert, genügt für einfache Formen der
+    // Vergleich danach; es muss kein verkürzter Strahl erzeugt werden.
+    public default double intersectT(Ray ray, double tMax) {
+        double t = intersectT(ray);
+        return t <= tMax ? t : MISS;
+    }
+
+    // Wie intersect, aber nur Treffer bis tMax. Zusammengesetzte Formen überschreiben das, um
+    // alles hinter tMax gar nicht erst zu besuchen.
+    public default Hit intersect(Ray ray, double tMax) {
+        Hit hit = intersect(ray);
+        return hit != null && hit.t() <= tMax ? hit : null;
+    }
+
+    // Zweite Phase: erzeugt den vollständigen Treffer für den Strahlparameter t, den intersectT
+    // für denselben Strahl geliefert hat. Ohne eigene Implementierung wird intersect aufgerufen.
+    public default Hit hitAt(Ray ray, double t) {
+        return intersect(ray);
+    }
+
+    // Zusammengesetzte Formen (Gruppen, Hierarchien, Instanzen) liefern true. Für sie lohnt sich
+    // die Aufteilung nicht, da hitAt die Suche im Inneren wiederholen müsste; sie werden deshalb
+    // beim Suchen des nächsten Treffers direkt mit intersect getestet.
+    public default boolean isAggregate() {
+        return false;
+    }
+
+    // Liefert eine Kopie der Form, in die die Transformation p -> scale * p + offset (scale > 0)
+    // direkt eingerechnet ist, oder null, wenn die Form das nicht kann. Wird vom SceneFlattener
+    // benutzt, um Gruppen, die nur verschieben oder skalieren, aufzulösen.
+    public default Shape bake(double scale, Direction offset) {
+        return null;
+    }
+
+    // Diese Methode prüft nur, ob irgendein Schnittpunkt im gültigen Bereich [tMin, tMax] liegt.
+    // Sie wird für Schattenstrahlen verwendet, bricht beim ersten Blocker ab und erzeugt kein Hit-Objekt.
+    public boolean occluded(Ray ray);
     
     // Diese Methode gibt die Begrenzungsbox (Bounding Box) des Objekts zurück.
     // Eine Bounding Box wird verwendet, um das Objekt in einem schnellen Bounding-Box-Intersektionstest einzugrenzen.
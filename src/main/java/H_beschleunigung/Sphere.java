@@ -8,8 +8,9 @@ import lib_cgtools.*;
  * Die Sphere-Klasse implementiert das Shape-Interface und stellt eine Kugel dar.
  * Sie berechnet den Schnittpunkt eines Strahls mit der Kugel und liefert die 
  * entsprechende Materialinformationen und Normale am Schnittpunkt.
+ * Mit einem Emitter als Material wird sie als Lichtquelle direkt gesampelt (AreaLight).
  */
-public class Sphere implements Shape {
+public class Sphere implements AreaLight {
     private Point center;   // Mittelpunkt der Kugel
     private double radius;  // Radius der Kugel
     private Material material;  // Material der Kugel
@@ -33,6 +34,14 @@ public class Sphere implements Shape {
         boundingBox = new BoundingBox(p_min, p_max);
     }
 
+    /*
+     * Verschieben und gleichmäßiges Skalieren ändern nur Mittelpunkt und Radius.
+     */
+    @Override
+    public Shape bake(double scale, Direction offset) {
+        return new Sphere(add(multiply(scale, center), offset), scale * radius, material);
+    }
+
     @Override
     public BoundingBox bounds() {
         return boundingBox;  // Rückgabe der Bounding Box der Kugel
@@ -45,56 +54,141 @@ public class Sphere implements Shape {
      */
     @Override
     public Hit intersect(Ray r) {
+        double t = intersectT(r);
+        return Double.isNaN(t) ? null : hitAt(r, t);
+    }
+
+    /*
+     * Löst nur die quadratische Gleichung und liefert den Strahlparameter des nächsten gültigen
+     * Schnittpunkts (oder MISS). Alle Zwischenwerte werden komponentenweise berechnet.
+     */
+    @Override
+    public double intersectT(Ray r) {
+        double ox = r.origin().x() - center.x();
+        double oy = r.origin().y() - center.y();
+        double oz = r.origin().z() - center.z();
+        double dx = r.direction().x();
+        double dy = r.direction().y();
+        double dz = r.direction().z();
+
         // Diskriminante für die quadratische Gleichung zur Bestimmung der Schnittpunkte
-        Point centerOrigin = subtract(r.origin(), subtract(center, new Point(0, 0, 0)));
-        double a = dotProduct(r.direction(), r.direction());
-        double b = 2 * dotProduct(centerOrigin, r.direction());
-        double c = dotProduct(centerOrigin, centerOrigin) - Math.pow(radius, 2);
-        double discriminant = Math.pow(b, 2) - 4 * a * c;
+        double a = dx * dx + dy * dy + dz * dz;
+        double b = 2 * (ox * dx + oy * dy + oz * dz);
+        double c = ox * ox + oy * oy + oz * oz - radius * radius;
+        double discriminant = b * b - 4 * a * c;
 
-        // Es gibt zwei Schnittpunkte (t1 und t2) im Falle eines positiven Diskriminanten
         if (discriminant > 0) {
-            double t1 = ((-b + Math.sqrt(discriminant))) / (2 * a);  // Lösung der quadratischen Gleichung
-            double t2 = ((-b - Math.sqrt(discriminant))) / (2 * a);  // Lösung der quadratischen Gleichung
-            double t = Math.min(t1, t2);  // Wähle den kleineren Wert (nächster Schnittpunkt)
-            if (t < 0) {
-                return null;  // Wenn der Schnittpunkt hinter dem Strahlursprung liegt, ignorieren
+            // Es gibt zwei Schnittpunkte, der kleinere Wert ist der nächste
+            double root = Math.sqrt(discriminant);
+            double t = Math.min((-b + root) / (2 * a), (-b - root) / (2 * a));
+            if (t < 0 || !r.isValid(t)) {
+                return MISS;  // Hinter dem Strahlursprung oder außerhalb des gültigen Bereichs
             }
-            if (r.isValid(t)) {  // Überprüfen, ob der Treffer gültig ist
-                Point hitP = r.pointAt(t);  // Berechne den Trefferpunkt
-                Direction normalV = divide((subtract(hitP, center)), radius);  // Normale an der Stelle des Schnittpunkts
-                Direction hitPV = subtract(hitP, center);  // Vektor vom Zentrum der Kugel zum Trefferpunkt
-                double teta = Math.PI - Math.acos(hitPV.y() / this.radius);  // Berechne den polarwinkel (teta)
-                double phi = Math.PI + Math.atan2(hitPV.x(), hitPV.z());  // Berechne den azimutwinkel (phi)
-                
-                // Berechne die UV-Koordinaten für Texturmapping
-                double u = phi / (2.0 * Math.PI);
-                double v = (teta / Math.PI);
-
-                return new Hit(t, r.pointAt(t), normalV, material, u, v);  // Rückgabe des Hit-Objekts
-            } 
+            return t;
         }
-        
-        // Falls der Diskriminant null ist, gibt es einen einzigen Schnittpunkt
         if (discriminant == 0) {
-            double t = (-b / (2 * a));  // Berechne den einzigen Schnittpunkt
-            if(t < 0) {
-                return null;  // Wenn der Schnittpunkt hinter dem Strahlursprung liegt, ignorieren
-            }
-            Point hitP = r.pointAt(t);  // Berechne den Trefferpunkt
-            Direction normalV = divide((subtract(hitP, center)), radius);  // Normale an der Stelle des Schnittpunkts
-            Direction hitPV = subtract(hitP, center);  // Vektor vom Zentrum der Kugel zum Trefferpunkt
-            double teta = Math.PI - Math.acos(hitPV.y() / this.radius);  // Berechne den polarwinkel (teta)
-            double phi = Math.PI + Math.atan2(hitPV.x(), hitPV.z());  // Berechne den azimutwinkel (phi)
-                
-            // Berechne die UV-Koordinaten für Texturmapping
-            double u = phi / (2.0 * Math.PI);
-            double v = (teta / Math.PI);
-                
-            return new Hit(t, r.pointAt(t), normalV, material, u, v);  // Rückgabe des Hit-Objekts
+            // Der Strahl berührt die Kugel in genau einem Punkt
+            double t = -b / (2 * a);
+            return t < 0 ? MISS : t;
         }
-        
-        return null;  // Falls keine Schnittpunkte existieren, gebe null zurück
+        return MISS;  // Falls keine Schnittpunkte existieren
+    }
+
+    /*
+     * Berechnet Trefferpunkt, Normale und die UV-Koordinaten (acos/atan2) für den Treffer bei t.
+     * Wird beim Suchen des nächsten Treffers nur noch für den Gewinner aufgerufen.
+     */
+    @Override
+    public Hit hitAt(Ray r, double t) {
+        // Trefferpunkt und Vektor vom Zentrum der Kugel zum Trefferpunkt
+        double px = r.origin().x() + t * r.direction().x();
+        double py = r.origin().y() + t * r.direction().y();
+        double pz = r.origin().z() + t * r.direction().z();
+        double hx = px - center.x();
+        double hy = py - center.y();
+        double hz = pz - center.z();
+        double teta = Math.PI - Math.acos(hy / this.radius);  // Berechne den polarwinkel (teta)
+        double phi = Math.PI + Math.atan2(hx, hz);  // Berechne den azimutwinkel (phi)
+
+        // Berechne die UV-Koordinaten für Texturmapping
+        double u = phi / (2.0 * Math.PI);
+        double v = (teta / Math.PI);
+
+        Point hitP = point(px, py, pz);
+        Direction normalV = direction(hx / radius, hy / radius, hz / radius);  // Normale an der Stelle des Schnittpunkts
+        return new Hit(t, hitP, normalV, material, u, v);  // Rückgabe des Hit-Objekts
+    }
+
+    /*
+     * Prüft wie intersect, ob der nächste Schnittpunkt gültig ist, rechnet aber nur mit
+     * primitiven Werten und erzeugt weder Punkte noch ein Hit-Objekt.
+     */
+    @Override
+    public boolean occluded(Ray r) {
+        double ox = r.origin().x() - center.x();
+        double oy = r.origin().y() - center.y();
+        double oz = r.origin().z() - center.z();
+        double dx = r.direction().x();
+        double dy = r.direction().y();
+        double dz = r.direction().z();
+
+        double a = dx * dx + dy * dy + dz * dz;
+        double b = 2 * (ox * dx + oy * dy + oz * dz);
+        double c = ox * ox + oy * oy + oz * oz - radius * radius;
+        double discriminant = b * b - 4 * a * c;
+        if (discriminant < 0) {
+            return false;
+        }
+
+        double t = (-b - Math.sqrt(discriminant)) / (2 * a);  // Der nähere der beiden Schnittpunkte
+        return t >= 0 && r.isValid(t);
+    }
+
+    /*
+     * Als Lichtquelle: gleichverteilte Richtung im Kegel, unter dem die Kugel von p aus zu sehen
+     * ist. Anders als beim Sampeln der Oberfläche treffen so alle Richtungen die sichtbare Seite.
+     */
+    @Override
+    public LightSample sample(Point p, Direction n, double u1, double u2) {
+        double cx = center.x() - p.x();
+        double cy = center.y() - p.y();
+        double cz = center.z() - p.z();
+        double d2 = cx * cx + cy * cy + cz * cz;
+        double r2 = radius * radius;
+        if (d2 <= r2) {
+            return null;  // p liegt in der Kugel
+        }
+        double oneMinusCosMax = oneMinusCosMax(d2, r2);
+        double d = Math.sqrt(d2);
+        Direction axis = direction(cx / d, cy / d, cz / d);
+        Direction dir = Sampling.uniformCone(axis, oneMinusCosMax, u1, u2);
+
+        // Vorderer Schnittpunkt von p + t * dir mit der Kugel (dir ist normiert)
+        double b = dir.x() * cx + dir.y() * cy + dir.z() * cz;
+        double t = b - Math.sqrt(Math.max(0, r2 - (d2 - b * b)));
+        return AreaLight.emitted(this, p, dir, t, Sampling.uniformConePdf(oneMinusCosMax));
+    }
+
+    @Override
+    public double pdf(Point p, Direction n, Hit hit) {
+        double cx = center.x() - p.x();
+        double cy = center.y() - p.y();
+        double cz = center.z() - p.z();
+        double d2 = cx * cx + cy * cy + cz * cz;
+        double r2 = radius * radius;
+        return d2 <= r2 ? 0 : Sampling.uniformConePdf(oneMinusCosMax(d2, r2));
+    }
+
+    // 1 - cos(theta_max) mit sin^2(theta_max) = r^2 / d^2, umgeformt ohne Auslöschung
+    private static double oneMinusCosMax(double d2, double r2) {
+        double sin2 = r2 / d2;
+        return sin2 / (1 + Math.sqrt(1 - sin2));
+    }
+
+    @Override
+    public boolean contains(Hit hit) {
+        double distance = length(subtract(hit.hit(), center));
+        return hit.material() == material && Math.abs(distance - radius) <= 1e-6 * (1 + radius);
     }
 
     // Getter für den Radius der Kugel
@@ -103,6 +197,7 @@ public class Sphere implements Shape {
     }
 
     // Getter für das Material der Kugel
+    @Override
     public Material getMaterial() {
         return material;
     }
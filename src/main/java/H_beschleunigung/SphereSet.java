@@ -0,0 +1,491 @@
+package H_beschleunigung;
+
+import static lib_cgtools.Vector.*;
+
+import lib_cgtools.Direction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+/*
+ * Eine große Menge von Kugeln als ein einziges Shape. Statt eines Sphere-Objekts pro Kugel
+ * (Punkt, Material-Referenz, zwei Eckpunkte und BoundingBox, zusammen über 200 Byte) liegen
+ * die Kugeln in primitiven Arrays:
+ *
+ * - spheres:   pro Kugel 4 floats {x, y, z, radius}
+ * - material:  pro Kugel ein Index (short) in die Materialtabelle materials
+ *
+ * Darüber wird mit build() eine eigene Hüllkörper-Hierarchie gebaut (SAH mit Binning entlang der
+ * längsten Achse, Blätter mit bis zu 4 Kugeln), im selben Format wie FlatBVH, aber mit
+ * float-Boxen. Die Boxen werden beim Speichern nach außen gerundet, damit keine Kugel durch die
+ * geringere Genauigkeit verloren geht. Zusammen sind das etwa 42 Byte pro Kugel, damit passen
+ * auch mehrere zehn Millionen Kugeln in einen normalen Heap (20 Millionen belegen etwa 850 MB,
+ * zum Bauen und Rendern reichen 1,3 GB).
+ *
+ * Geschnitten wird in double. Wie bei Sphere zählt nur der nähere Schnittpunkt (Strahlen aus dem
+ * Inneren einer Kugel treffen sie nicht). Nach build() darf die Menge nicht mehr verändert werden.
+ */
+public class SphereSet implements Shape {
+
+    private static final int BINS = 16;              // Anzahl der Bins entlang der längsten Achse
+    private static final int MAX_LEAF_SIZE = 4;      // Bis zu so vielen Kugeln werden immer ein Blatt
+    private static final int MAX_DEPTH = 64;         // Schutz vor entarteten Aufteilungen
+
+    private float[] spheres = new float[64];  // {x, y, z, radius} pro Kugel
+    private short[] material = new short[16]; // Materialindex pro Kugel
+    private int count;                        // Anzahl der Kugeln
+
+    private ArrayList<Material> materials = new ArrayList<>();               // Materialtabelle
+    private IdentityHashMap<Material, Integer> materialIndex = new IdentityHashMap<>();
+
+    private float[] bounds = new float[0];   // Boxen aller Knoten, 6 pro Knoten
+    private int[] nodes = new int[0];        // Wie bei FlatBVH: {rechtes Kind, 0} oder {erste Kugel, Anzahl}
+    private int nodeCount;
+    private BoundingBox boundingBox = BoundingBox.empty;
+
+    public SphereSet() {
+    }
+
+    /*
+     * Legt die Arrays gleich für die erwartete Anzahl Kugeln an, damit sie beim Einfügen nicht
+     * wachsen müssen (sonst wird kurzzeitig doppelt so viel Speicher gebraucht).
+     */
+    public SphereSet(int expectedCount) {
+        spheres = new float[4 * Math.max(expectedCount, 1)];
+        material = new short[Math.max(expectedCount, 1)];
+    }
+
+    /*
+     * Fügt eine Kugel hinzu. Es sind höchstens 65536 verschiedene Materialien möglich.
+     */
+    public void add(double x, double y, double z, double radius, Material m) {
+        Integer index = materialIndex.get(m);
+        if (index == null) {
+            if (materials.size() > 0xFFFF) {
+                throw new IllegalStateException("Zu viele Materialien in SphereSet");
+            }
+            index = materials.size();
+            materials.add(m);
+            materialIndex.put(m, index);
+        }
+        if (count == material.length) {
+            spheres = Arrays.copyOf(spheres, 8 * count);
+            material = Arrays.copyOf(material, 2 * count);
+        }
+        spheres[4 * count] = (float) x;
+        spheres[4 * count + 1] = (float) y;
+        spheres[4 * count + 2] = (float) z;
+        spheres[4 * count + 3] = (float) radius;
+        material[count] = (short) (int) index;
+        count++;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /*
+     * Baut die Hierarchie über alle Kugeln. Muss nach dem letzten add() und vor dem Rendern
+     * aufgerufen werden.
+     */
+    public SphereSet build() {
+        // Nur kürzen, wenn nicht schon passend angelegt (SphereSet(expectedCount)), sonst liegen
+        // die Kugeln beim Kopieren kurzzeitig doppelt im Speicher
+        if (material.length != count) {
+            spheres = Arrays.copyOf(spheres, 4 * count);
+            material = Arrays.copyOf(material, count);
+        }
+        nodeCount = 0;
+        if (count == 0) {
+            bounds = new float[0];
+            nodes = new int[0];
+            boundingBox = BoundingBox.empty;
+            return this;
+        }
+
+        // Bei Blättern mit bis zu 4 Kugeln hat der Baum meist etwa 2/3 so viele Knoten wie Kugeln.
+        // Reicht das nicht, wachsen die Arrays in ensureCapacity.
+        int capacity = Math.max(16, count / 4 * 3);
+        bounds = new float[6 * capacity];
+        nodes = new int[2 * capacity];
+
+        double[] box = emptyBox();
+        double[] centers = emptyBox();
+        for (int k = 0; k < count; k++) {
+            int s = 4 * k;
+            extendAt(box, 0, spheres[s], spheres[s + 1], spheres[s + 2], spheres[s + 3]);
+            extendAt(centers, 0, spheres[s], spheres[s + 1], spheres[s + 2], 0);
+        }
+        new Builder().build(0, count, 0, box, centers);
+
+        // Gekürzt wird nur bei mehr als einem Achtel ungenutzter Knoten. Die Kopie braucht
+        // kurzzeitig Platz für beide Fassungen, was bei kleinem Rest mehr kostet als er spart.
+        int unused = nodes.length / 2 - nodeCount;
+        if (unused > nodes.length / 16) {
+            bounds = Arrays.copyOf(bounds, 6 * nodeCount);
+            nodes = Arrays.copyOf(nodes, 2 * nodeCount);
+        }
+
+        boundingBox = new BoundingBox(point(bounds[0], bounds[1], bounds[2]), point(bounds[3], bounds[4], bounds[5]));
+        return this;
+    }
+
+    /*
+     * Baut die Hierarchie rekursiv über die Kugeln [start, end). Die Kugeln selbst werden dabei
+     * aufgeteilt (kein Index-Array), sodass alle Durchläufe sequentiell über den Speicher gehen
+     * und die Blätter am Ende direkt auf zusammenhängende Bereiche zeigen. Die Boxen der Kinder
+     * fallen beim Binning des Elternknotens mit ab.
+     *
+     * Die Knoten werden in Tiefensuche geschrieben, das linke Kind liegt direkt hinter seinem
+     * Elternknoten.
+     */
+    private class Builder {
+        private final int[] binCount = new int[BINS];
+        private final double[] binBounds = new double[6 * BINS];   // Boxen der Kugeln pro Bin
+        private final double[] binCenters = new double[6 * BINS];  // Boxen der Mittelpunkte pro Bin
+        private final double[] rightArea = new double[BINS];
+
+        /*
+         * box und centers sind die Box der Kugeln und die Box ihrer Mittelpunkte im Bereich.
+         */
+        int build(int start, int end, int depth, double[] box, double[] centers) {
+            int index = nodeCount++;
+            ensureCapacity();
+            store(index, box);
+
+            int n = end - start;
+            int axis = longestAxis(centers);
+            double extent = centers[axis + 3] - centers[axis];
+            if (n <= MAX_LEAF_SIZE || extent <= 0 || depth >= MAX_DEPTH) {
+                makeLeaf(index, start, n);
+                return index;
+            }
+
+            // Kugeln nach Mittelpunkt in Bins einsortieren
+            Arrays.fill(binCount, 0);
+            for (int b = 0; b < BINS; b++) {
+                setEmpty(binBounds, 6 * b);
+                setEmpty(binCenters, 6 * b);
+            }
+            double scale = BINS / extent;
+            for (int k = start; k < end; k++) {
+                int s = 4 * k;
+                int b = bin(spheres[s + axis], centers[axis], scale);
+                binCount[b]++;
+                extendAt(binBounds, 6 * b, spheres[s], spheres[s + 1], spheres[s + 2], spheres[s + 3]);
+                extendAt(binCenters, 6 * b, spheres[s], spheres[s + 1], spheres[s + 2], 0);
+            }
+
+            // Oberflächen von rechts aufsummieren, dann von links die günstigste Grenze suchen
+            double[] acc = emptyBox();
+            for (int b = BINS - 1; b > 0; b--) {
+                merge(acc, binBounds, 6 * b);
+                rightArea[b] = area(acc);
+            }
+            acc = emptyBox();
+            int leftCount = 0;
+            int bestSplit = -1;
+            double bestCost = Double.POSITIVE_INFINITY;
+            for (int b = 1; b < BINS; b++) {
+                merge(acc, binBounds, 6 * (b - 1));
+                leftCount += binCount[b - 1];
+                int rightCount = n - leftCount;
+                if (leftCount == 0 || rightCount == 0) {
+                    continue;
+                }
+                double cost = area(acc) * leftCount + rightArea[b] * rightCount;
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    bestSplit = b;
+                }
+            }
+            if (bestSplit < 0) {
+                makeLeaf(index, start, n);
+                return index;
+            }
+
+            // Boxen der beiden Kinder aus den Bins, bevor die Rekursion die Bins überschreibt
+            double[] leftBox = emptyBox(), leftCenters = emptyBox();
+            double[] rightBox = emptyBox(), rightCenters = emptyBox();
+            for (int b = 0; b < BINS; b++) {
+                merge(b < bestSplit ? leftBox : rightBox, binBounds, 6 * b);
+                merge(b < bestSplit ? leftCenters : rightCenters, binCenters, 6 * b);
+            }
+
+            // Kugeln aufteilen: Bins links der Grenze nach vorne
+            // (von beiden Seiten, getauscht wird nur ein Paar, das jeweils auf der falschen Seite liegt)
+            int i = start, j = end - 1;
+            while (true) {
+                while (i <= j && bin(spheres[4 * i + axis], centers[axis], scale) < bestSplit) {
+                    i++;
+                }
+                while (i < j && bin(spheres[4 * j + axis], centers[axis], scale) >= bestSplit) {
+                    j--;
+                }
+                if (i >= j) {
+                    break;
+                }
+                swap(i++, j--);
+            }
+
+            build(start, i, depth + 1, leftBox, leftCenters);
+            int right = build(i, end, depth + 1, rightBox, rightCenters);
+            nodes[2 * index] = right;
+            nodes[2 * index + 1] = 0;
+            return index;
+        }
+
+        private void makeLeaf(int index, int start, int n) {
+            nodes[2 * index] = start;
+            nodes[2 * index + 1] = n;
+        }
+
+        private int bin(float c, double min, double scale) {
+            int b = (int) ((c - min) * scale);
+            return b < 0 ? 0 : Math.min(b, BINS - 1);
+        }
+
+        private void swap(int a, int b) {
+            for (int c = 0; c < 4; c++) {
+                float tmp = spheres[4 * a + c];
+                spheres[4 * a + c] = spheres[4 * b + c];
+                spheres[4 * b + c] = tmp;
+            }
+            short m = material[a];
+            material[a] = material[b];
+            material[b] = m;
+        }
+    }
+
+    private void ensureCapacity() {
+        if (2 * nodeCount > nodes.length) {
+            nodes = Arrays.copyOf(nodes, 2 * nodes.length);
+            bounds = Arrays.copyOf(bounds, 2 * bounds.length);
+        }
+    }
+
+    // Speichert eine Box als float, nach außen gerundet
+    private void store(int index, double[] box) {
+        for (int a = 0; a < 3; a++) {
+            bounds[6 * index + a] = Math.nextDown((float) box[a]);
+            bounds[6 * index + 3 + a] = Math.nextUp((float) box[a + 3]);
+        }
+    }
+
+    private static double[] emptyBox() {
+        double[] box = new double[6];
+        setEmpty(box, 0);
+        return box;
+    }
+
+    private static void setEmpty(double[] box, int o) {
+        Arrays.fill(box, o, o + 3, Double.POSITIVE_INFINITY);
+        Arrays.fill(box, o + 3, o + 6, Double.NEGATIVE_INFINITY);
+    }
+
+    // Erweitert die Box bei Offset o um die Kugel (x, y, z, r)
+    private static void extendAt(double[] box, int o, double x, double y, double z, double r) {
+        if (x - r < box[o]) box[o] = x - r;
+        if (y - r < box[o + 1]) box[o + 1] = y - r;
+        if (z - r < box[o + 2]) box[o + 2] = z - r;
+        if (x + r > box[o + 3]) box[o + 3] = x + r;
+        if (y + r > box[o + 4]) box[o + 4] = y + r;
+        if (z + r > box[o + 5]) box[o + 5] = z + r;
+    }
+
+    private static void merge(double[] box, double[] other, int o) {
+        for (int a = 0; a < 3; a++) {
+            box[a] = Math.min(box[a], other[o + a]);
+            box[a + 3] = Math.max(box[a + 3], other[o + 3 + a]);
+        }
+    }
+
+    private static double area(double[] box) {
+        double dx = box[3] - box[0], dy = box[4] - box[1], dz = box[5] - box[2];
+        if (dx < 0 || dy < 0 || dz < 0) {
+            return 0;
+        }
+        return 2 * (dx * dy + dy * dz + dz * dx);
+    }
+
+    private static int longestAxis(double[] box) {
+        double dx = box[3] - box[0], dy = box[4] - box[1], dz = box[5] - box[2];
+        return dx >= dy && dx >= dz ? 0 : (dy >= dz ? 1 : 2);
+    }
+
+    @Override
+    public BoundingBox bounds() {
+        return boundingBox;
+    }
+
+    @Override
+    public boolean isAggregate() {
+        return true;
+    }
+
+    /*
+     * Nächster Treffer: Traversierung wie bei FlatBVH (nähere Kinder zuerst, Knoten hinter dem
+     * bisher besten Treffer werden übersprungen). Der Hit wird nur für die nächste Kugel erzeugt.
+     */
+    @Override
+    public Hit intersect(Ray ray) {
+        return intersect(ray, ray.tMax());
+    }
+
+    @Override
+    public Hit intersect(Ray ray, double tMax) {
+        if (nodeCount == 0) {
+            return null;
+        }
+        double limit = tMax;
+        int best = -1;
+        double rootEntry = boxEntry(0, ray, limit);
+        if (Double.isNaN(rootEntry)) {
+            return null;
+        }
+
+        TraversalStack stack = TraversalStack.current();
+        int base = stack.top;
+        stack.push(0, rootEntry);
+        while (stack.top > base) {
+            int node = stack.pop();
+            if (stack.entry() > limit) {
+                continue;
+            }
+            int n = nodes[2 * node + 1];
+            if (n > 0) {
+                int first = nodes[2 * node];
+                for (int k = first; k < first + n; k++) {
+                    double t = sphereT(k, ray, limit);
+                    if (!Double.isNaN(t)) {
+                        limit = t;
+                        best = k;
+                    }
+                }
+                continue;
+            }
+
+            int left = node + 1;
+            int right = nodes[2 * node];
+            double leftEntry = boxEntry(left, ray, limit);
+            double rightEntry = boxEntry(right, ray, limit);
+            boolean leftFirst = Double.isNaN(rightEntry) || leftEntry <= rightEntry;
+            int near = leftFirst ? left : right, far = leftFirst ? right : left;
+            double nearEntry = leftFirst ? leftEntry : rightEntry, farEntry = leftFirst ? rightEntry : leftEntry;
+            if (!Double.isNaN(farEntry)) {
+                stack.push(far, farEntry);
+            }
+            if (!Double.isNaN(nearEntry)) {
+                stack.push(near, nearEntry);
+            }
+        }
+        return best < 0 ? null : hitAt(best, ray, limit);
+    }
+
+    /*
+     * Schattentest: Abbruch bei der ersten Kugel, die den Strahl blockiert.
+     */
+    @Override
+    public boolean occluded(Ray ray) {
+        if (nodeCount == 0) {
+            return false;
+        }
+        TraversalStack stack = TraversalStack.current();
+        int base = stack.top;
+        stack.push(0);
+        while (stack.top > base) {
+            int node = stack.pop();
+            if (Double.isNaN(boxEntry(node, ray, ray.tMax()))) {
+                continue;
+            }
+            int n = nodes[2 * node + 1];
+            if (n > 0) {
+                int first = nodes[2 * node];
+                for (int k = first; k < first + n; k++) {
+                    if (!Double.isNaN(sphereT(k, ray, ray.tMax()))) {
+                        stack.top = base;
+                        return true;
+                    }
+                }
+            } else {
+                stack.push(nodes[2 * node]);
+                stack.push(node + 1);
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Strahlparameter des näheren Schnittpunkts mit Kugel k, falls er in [tMin, limit) liegt,
+     * sonst NaN. Entspricht Sphere.intersectT.
+     */
+    private double sphereT(int k, Ray ray, double limit) {
+        int s = 4 * k;
+        double radius = spheres[s + 3];
+        double ox = ray.origin().x() - spheres[s];
+        double oy = ray.origin().y() - spheres[s + 1];
+        double oz = ray.origin().z() - spheres[s + 2];
+        double dx = ray.direction().x();
+        double dy = ray.direction().y();
+        double dz = ray.direction().z();
+
+        double a = dx * dx + dy * dy + dz * dz;
+        double b = ox * dx + oy * dy + oz * dz;
+        double c = ox * ox + oy * oy + oz * oz - radius * radius;
+        double discriminant = b * b - a * c;
+        if (discriminant < 0) {
+            return Double.NaN;
+        }
+        double t = (-b - Math.sqrt(discriminant)) / a;
+        return t >= 0 && t >= ray.tMin() && t < limit ? t : Double.NaN;
+    }
+
+    // Trefferpunkt, Normale und UV-Koordinaten wie bei Sphere.hitAt
+    private Hit hitAt(int k, Ray ray, double t) {
+        int s = 4 * k;
+        double radius = spheres[s + 3];
+        double px = ray.origin().x() + t * ray.direction().x();
+        double py = ray.origin().y() + t * ray.direction().y();
+        double pz = ray.origin().z() + t * ray.direction().z();
+        double hx = px - spheres[s];
+        double hy = py - spheres[s + 1];
+        double hz = pz - spheres[s + 2];
+        double teta = Math.PI - Math.acos(Math.max(-1, Math.min(1, hy / radius)));
+        double phi = Math.PI + Math.atan2(hx, hz);
+        double u = phi / (2.0 * Math.PI);
+        double v = teta / Math.PI;
+        Direction normal = direction(hx / radius, hy / radius, hz / radius);
+        return new Hit(t, point(px, py, pz), normal, materials.get(material[k] & 0xFFFF), u, v);
+    }
+
+    /*
+     * Slab-Test auf dem float-Array der Boxen, wie FlatBVH.boxEntry.
+     */
+    private double boxEntry(int node, Ray ray, double tMax) {
+        int o = 6 * node;
+        double near = ray.tMin();
+        double far = tMax;
+
+        double t0 = (bounds[o + 3 * ray.signX] - ray.origin().x()) * ray.invX;
+        double t1 = (bounds[o + 3 - 3 * ray.signX] - ray.origin().x()) * ray.invX;
+        near = t0 > near ? t0 : near;
+        far = t1 < far ? t1 : far;
+
+        t0 = (bounds[o + 1 + 3 * ray.signY] - ray.origin().y()) * ray.invY;
+        t1 = (bounds[o + 4 - 3 * ray.signY] - ray.origin().y()) * ray.invY;
+        near = t0 > near ? t0 : near;
+        far = t1 < far ? t1 : far;
+
+        t0 = (bounds[o + 2 + 3 * ray.signZ] - ray.origin().z()) * ray.invZ;
+        t1 = (bounds[o + 5 - 3 * ray.signZ] - ray.origin().z()) * ray.invZ;
+        near = t0 > near ? t0 : near;
+        far = t1 < far ? t1 : far;
+
+        return near <= far ? near : Double.NaN;
+    }
+}
@@ -0,0 +1,64 @@
+package H_beschleunigung;
+
+import java.util.Arrays;
+
+/*
+ * Stack für die iterative Traversierung (FlatBVH, Group). Zu jedem Eintrag wird die Distanz
+ * gespeichert, bei der der Strahl die zugehörige Box betritt. So kann beim Entnehmen geprüft
+ * werden, ob die Box inzwischen hinter dem bisher nächsten Treffer liegt.
+ *
+ * Es gibt einen Stack pro Thread. Verschachtelte Traversierungen (z.B. eine FlatBVH in einer
+ * Group) arbeiten oberhalb von top weiter und müssen den Stack wieder bis zu ihrem Anfang
+ * (base) abbauen.
+ */
+final class TraversalStack {
+
+    private static final ThreadLocal<TraversalStack> stacks = ThreadLocal.withInitial(TraversalStack::new);
+
+    int[] data = new int[128];
+    double[] entries = new double[128];
+    int top;
+
+    static TraversalStack current() {
+        return stacks.get();
+    }
+
+    void push(int item) {
+        push(item, 0);
+    }
+
+    void push(int item, double entry) {
+        if (top == data.length) {
+            data = Arrays.copyOf(data, 2 * data.length);
+            entries = Arrays.copyOf(entries, 2 * entries.length);
+        }
+        data[top] = item;
+        entries[top] = entry;
+        top++;
+    }
+
+    /*
+     * Fügt den Eintrag so ein, dass die Einträge ab base absteigend nach Distanz sortiert
+     * bleiben. pop() liefert dann immer den nächstgelegenen zuerst (Insertion Sort).
+     */
+    void pushSorted(int base, int item, double entry) {
+        push(item, entry);
+        int i = top - 1;
+        while (i > base && entries[i - 1] < entry) {
+            data[i] = data[i - 1];
+            entries[i] = entries[i - 1];
+            i--;
+        }
+        data[i] = item;
+        entries[i] = entry;
+    }
+
+    int pop() {
+        return data[--top];
+    }
+
+    // Distanz des zuletzt mit pop() entnommenen Eintrags
+    double entry() {
+        return entries[top];
+    }
+}
@@ -0,0 +1,435 @@
+package H_beschleunigung;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/*
+ * Ein gleichmäßiges Gitter (Uniform Grid) als Alternative zur Hüllkörper-Hierarchie.
+ * Die Box der Szene wird in resX x resY x resZ gleich große Zellen zerlegt, jede Zelle kennt
+ * die Primitive, deren Box sie überlappt. Ein Strahl läuft mit dem 3D-DDA-Verfahren
+ * (Amanatides & Woo) Zelle für Zelle in Strahlrichtung durch das Gitter und testet nur die
+ * Primitive der besuchten Zellen. Sobald der nächste Treffer vor dem Ende der aktuellen Zelle
+ * liegt, kann abgebrochen werden.
+ *
+ * Die Auflösung wird automatisch aus der Anzahl der Primitive und der Box bestimmt, sodass
+ * auf jedes Primitiv etwa CELLS_PER_PRIMITIVE Zellen kommen (die übliche Faustregel, eine Zelle
+ * enthält also im Mittel nur ein Drittel Primitiv). Das Gitter eignet sich besonders
+ * für gleichmäßig verteilte, ähnlich große Primitive.
+ *
+ * Die Zellinhalte liegen in zwei int-Arrays (cellStart, cellItems). Da ein Primitiv in
+ * mehreren Zellen liegen kann, merkt sich ein "Mailbox"-Array pro Thread, welche Primitive
+ * für den aktuellen Strahl schon getestet wurden.
+ */
+public class UniformGrid implements Shape {
+
+    private static final double CELLS_PER_PRIMITIVE = 3.0;  // Angestrebte Anzahl Zellen pro Primitiv
+    private static final int MAX_RESOLUTION = 256; // Höchstens so viele Zellen pro Achse
+
+    private Shape[] primitives;  // Alle Primitive mit endlicher Box
+    private Shape[] unbounded;   // Shapes ohne endliche Box (z.B. Background), werden einzeln getestet
+    private int[] resolution = new int[3];       // Anzahl Zellen pro Achse
+    private double[] min = new double[3];        // Minimalpunkt des Gitters
+    private double[] max = new double[3];        // Maximalpunkt des Gitters
+    private double[] cellSize = new double[3];   // Kantenlängen einer Zelle
+    private int[] cellStart;     // Zelle c enthält cellItems[cellStart[c] .. cellStart[c + 1])
+    private int[] cellItems;     // Primitiv-Indizes aller Zellen hintereinander
+    private BoundingBox boundingBox;
+
+    // Pro Thread: für welchen Strahl wurde ein Primitiv zuletzt getestet
+    private final ThreadLocal<Mailbox> mailboxes = ThreadLocal.withInitial(() -> new Mailbox(primitives.length));
+
+    // Pro Thread wiederverwendete DDA-Zustände, damit ein Strahl keine Objekte erzeugt
+    private static final ThreadLocal<Traversals> traversals = ThreadLocal.withInitial(Traversals::new);
+
+    /*
+     * Baut ein Gitter über alle Primitive unter root. Gruppen ohne Transformation und
+     * Hierarchien werden dabei wie in der FlatBVH aufgelöst.
+     */
+    public UniformGrid(Shape root) {
+        ArrayList<Shape> bounded = new ArrayList<>();
+        ArrayList<Shape> infinite = new ArrayList<>();
+        FlatBVH.collect(root, bounded, infinite);
+        primitives = bounded.toArray(new Shape[0]);
+        unbounded = infinite.toArray(new Shape[0]);
+
+        BoundingBox box = BoundingBox.empty;
+        for (Shape s : primitives) {
+            box = box.extend(s.bounds());
+        }
+        boundingBox = box;
+        for (Shape s : unbounded) {
+            boundingBox = boundingBox.extend(s.bounds());
+        }
+        if (primitives.length == 0) {
+            cellStart = new int[0];
+            cellItems = new int[0];
+            return;
+        }
+
+        min[0] = box.min.x();
+        min[1] = box.min.y();
+        min[2] = box.min.z();
+        max[0] = box.max.x();
+        max[1] = box.max.y();
+        max[2] = box.max.z();
+        chooseResolution();
+        fillCells();
+    }
+
+    /*
+     * Die Primitive des Gitters und die Shapes ohne endliche Box (z.B. zum Sammeln der
+     * Lichtquellen in AreaLights).
+     */
+    Shape[] getPrimitives() {
+        return primitives;
+    }
+
+    Shape[] getUnbounded() {
+        return unbounded;
+    }
+
+    /*
+     * Wählt die Auflösung so, dass es ungefähr CELLS_PER_PRIMITIVE * N Zellen gibt:
+     * Zellen pro Achse = Ausdehnung * (CELLS_PER_PRIMITIVE * N / Volumen)^(1/3).
+     * Sehr flache Achsen (z.B. eine Ebene) werden für das Volumen etwas aufgedickt.
+     */
+    private void chooseResolution() {
+        double[] extent = new double[3];
+        double largest = 0;
+        for (int a = 0; a < 3; a++) {
+            largest = Math.max(largest, max[a] - min[a]);
+        }
+        double volume = 1;
+        for (int a = 0; a < 3; a++) {
+            extent[a] = Math.max(max[a] - min[a], largest * 1e-3);
+            volume *= extent[a];
+        }
+
+        double cellsPerUnit = volume > 0 ? Math.cbrt(CELLS_PER_PRIMITIVE * primitives.length / volume) : 0;
+        for (int a = 0; a < 3; a++) {
+            int cells = (int) Math.round(extent[a] * cellsPerUnit);
+            resolution[a] = Math.max(1, Math.min(MAX_RESOLUTION, cells));
+            cellSize[a] = (max[a] - min[a]) / resolution[a];
+        }
+    }
+
+    /*
+     * Trägt jedes Primitiv in alle Zellen ein, die seine Box überlappt. Zuerst wird gezählt,
+     * dann werden die Bereiche über eine Präfixsumme vergeben und im zweiten Durchlauf gefüllt.
+     */
+    private void fillCells() {
+        int cellCount = resolution[0] * resolution[1] * resolution[2];
+        int[] lo = new int[3 * primitives.length];
+        int[] hi = new int[3 * primitives.length];
+        int[] count = new int[cellCount + 1];
+
+        for (int i = 0; i < primitives.length; i++) {
+            BoundingBox b = primitives[i].bounds();
+            lo[3 * i] = cellOf(b.min.x(), 0);
+            lo[3 * i + 1] = cellOf(b.min.y(), 1);
+            lo[3 * i + 2] = cellOf(b.min.z(), 2);
+            hi[3 * i] = cellOf(b.max.x(), 0);
+            hi[3 * i + 1] = cellOf(b.max.y(), 1);
+            hi[3 * i + 2] = cellOf(b.max.z(), 2);
+            for (int z = lo[3 * i + 2]; z <= hi[3 * i + 2]; z++) {
+                for (int y = lo[3 * i + 1]; y <= hi[3 * i + 1]; y++) {
+                    for (int x = lo[3 * i]; x <= hi[3 * i]; x++) {
+                        count[cellIndex(x, y, z) + 1]++;
+                    }
+                }
+            }
+        }
+
+        cellStart = new int[cellCount + 1];
+        for (int c = 0; c < cellCount; c++) {
+            cellStart[c + 1] = cellStart[c] + count[c + 1];
+        }
+        cellItems = new int[cellStart[cellCount]];
+
+        int[] next = Arrays.copyOf(cellStart, cellCount);
+        for (int i = 0; i < primitives.length; i++) {
+            for (int z = lo[3 * i + 2]; z <= hi[3 * i + 2]; z++) {
+                for (int y = lo[3 * i + 1]; y <= hi[3 * i + 1]; y++) {
+                    for (int x = lo[3 * i]; x <= hi[3 * i]; x++) {
+                        cellItems[next[cellIndex(x, y, z)]++] = i;
+                    }
+                }
+            }
+        }
+    }
+
+    // Zellkoordinate eines Werts auf der Achse a (auf das Gitter begrenzt)
+    private int cellOf(double value, int a) {
+        if (cellSize[a] <= 0) {
+            return 0;
+        }
+        int cell = (int) Math.floor((value - min[a]) / cellSize[a]);
+        return Math.max(0, Math.min(resolution[a] - 1, cell));
+    }
+
+    private int cellIndex(int x, int y, int z) {
+        return (z * resolution[1] + y) * resolution[0] + x;
+    }
+
+    @Override
+    public BoundingBox bounds() {
+        return boundingBox;
+    }
+
+    /*
+     * Nächster Treffer: die Zellen werden in Strahlrichtung besucht, bis ein Treffer vor dem
+     * Ende der aktuellen Zelle liegt oder der Strahl das Gitter verlässt. Der vollständige
+     * Treffer wird erst am Ende für das nächste Primitiv erzeugt.
+     */
+    @Override
+    public Hit intersect(Ray ray) {
+        return intersect(ray, ray.tMax());
+    }
+
+    @Override
+    public Hit intersect(Ray ray, double tMax) {
+        Nearest nearest = Nearest.acquire(ray, tMax);
+        try {
+            findNearest(ray, nearest);
+            return nearest.hit();
+        } finally {
+            nearest.release();
+        }
+    }
+
+    @Override
+    public boolean isAggregate() {
+        return true;
+    }
+
+    private void findNearest(Ray ray, Nearest nearest) {
+        for (Shape s : unbounded) {
+            nearest.test(s);
+        }
+        if (primitives.length == 0) {
+            return;
+        }
+
+        double closestT = nearest.limit();
+        Traversals pool = traversals.get();
+        Traversal dda = pool.acquire();
+        try {
+            if (!dda.start(this, ray, closestT)) {
+                return;
+            }
+
+            Mailbox mailbox = mailboxes.get();
+            int stamp = mailbox.nextRay();
+            while (true) {
+                int cell = cellIndex(dda.cell[0], dda.cell[1], dda.cell[2]);
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                    int i = cellItems[k];
+                    if (mailbox.stamps[i] == stamp) {
+                        continue;
+                    }
+                    mailbox.stamps[i] = stamp;
+                    if (nearest.test(primitives[i])) {
+                        closestT = nearest.limit();
+                    }
+                }
+                if (closestT <= dda.cellExit() || !dda.step(closestT)) {
+                    return;
+                }
+            }
+        } finally {
+            pool.release();
+        }
+    }
+
+    /*
+     * Schattentest: gleicher Durchlauf, Abbruch beim ersten blockierenden Primitiv.
+     */
+    @Override
+    public boolean occluded(Ray ray) {
+        for (Shape s : unbounded) {
+            if (s.occluded(ray)) {
+                return true;
+            }
+        }
+        if (primitives.length == 0) {
+            return false;
+        }
+
+        Traversals pool = traversals.get();
+        Traversal dda = pool.acquire();
+        try {
+            if (!dda.start(this, ray, ray.tMax())) {
+                return false;
+            }
+
+            Mailbox mailbox = mailboxes.get();
+            int stamp = mailbox.nextRay();
+            while (true) {
+                int cell = cellIndex(dda.cell[0], dda.cell[1], dda.cell[2]);
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                    int i = cellItems[k];
+                    if (mailbox.stamps[i] == stamp) {
+                        continue;
+                    }
+                    mailbox.stamps[i] = stamp;
+                    if (primitives[i].occluded(ray)) {
+                        return true;
+                    }
+                }
+                if (!dda.step(ray.tMax())) {
+                    return false;
+                }
+            }
+        } finally {
+            pool.release();
+        }
+    }
+
+    public int[] getResolution() {
+        return resolution.clone();
+    }
+
+    public int getCellCount() {
+        return resolution[0] * resolution[1] * resolution[2];
+    }
+
+    /*
+     * Zustand des 3D-DDA für einen Strahl: aktuelle Zelle, Schrittrichtung pro Achse,
+     * Strahlparameter der nächsten Zellgrenze pro Achse und Abstand zwischen zwei Grenzen.
+     * Die Objekte werden pro Thread wiederverwendet (siehe Traversals), start() setzt sie für
+     * einen neuen Strahl auf.
+     */
+    private static final class Traversal {
+        final int[] cell = new int[3];
+        final int[] step = new int[3];
+        final double[] tNext = new double[3];
+        final double[] tDelta = new double[3];
+        private final double[] origin = new double[3];
+        private final double[] direction = new double[3];
+        private final double[] inverse = new double[3];
+        private int[] resolution;
+
+        /*
+         * Beginnt den Durchlauf des Strahls durch das Gitter grid bis tMax. false, wenn der
+         * Strahl die Box des Gitters nicht trifft.
+         */
+        boolean start(UniformGrid grid, Ray ray, double tMax) {
+            double[] min = grid.min;
+            double[] max = grid.max;
+            double[] cellSize = grid.cellSize;
+            resolution = grid.resolution;
+            origin[0] = ray.origin().x();
+            origin[1] = ray.origin().y();
+            origin[2] = ray.origin().z();
+            direction[0] = ray.direction().x();
+            direction[1] = ray.direction().y();
+            direction[2] = ray.direction().z();
+            inverse[0] = ray.invX;
+            inverse[1] = ray.invY;
+            inverse[2] = ray.invZ;
+
+            // Strahl auf die Box des Gitters begrenzen (Slab-Test)
+            double tEnter = ray.tMin();
+            double tExit = tMax;
+            for (int a = 0; a < 3; a++) {
+                double t1 = (min[a] - origin[a]) * inverse[a];
+                double t2 = (max[a] - origin[a]) * inverse[a];
+                if (Double.isNaN(t1) || Double.isNaN(t2)) {
+                    continue; // Strahl liegt genau in einer Grenzebene und läuft parallel dazu
+                }
+                tEnter = Math.max(tEnter, Math.min(t1, t2));
+                tExit = Math.min(tExit, Math.max(t1, t2));
+            }
+            if (tEnter > tExit) {
+                return false;
+            }
+
+            for (int a = 0; a < 3; a++) {
+                cell[a] = grid.cellOf(origin[a] + tEnter * direction[a], a);
+                if (direction[a] > 0) {
+                    step[a] = 1;
+                    tNext[a] = (min[a] + (cell[a] + 1) * cellSize[a] - origin[a]) / direction[a];
+                    tDelta[a] = cellSize[a] / direction[a];
+                } else if (direction[a] < 0) {
+                    step[a] = -1;
+                    tNext[a] = (min[a] + cell[a] * cellSize[a] - origin[a]) / direction[a];
+                    tDelta[a] = -cellSize[a] / direction[a];
+                } else {
+                    step[a] = 0;
+                    tNext[a] = Double.POSITIVE_INFINITY;
+                    tDelta[a] = Double.POSITIVE_INFINITY;
+                }
+            }
+            return true;
+        }
+
+        // Strahlparameter, an dem der Strahl die aktuelle Zelle verlässt
+        double cellExit() {
+            return Math.min(tNext[0], Math.min(tNext[1], tNext[2]));
+        }
+
+        /*
+         * Geht in die nächste Zelle. Gibt false zurück, wenn der Strahl das Gitter verlässt
+         * oder die nächste Zelle erst hinter tMax beginnt.
+         */
+        boolean step(double tMax) {
+            int a = tNext[0] < tNext[1]
+                ? (tNext[0] < tNext[2] ? 0 : 2)
+                : (tNext[1] < tNext[2] ? 1 : 2);
+            if (tNext[a] > tMax) {
+                return false;
+            }
+            cell[a] += step[a];
+            if (cell[a] < 0 || cell[a] >= resolution[a]) {
+                return false;
+            }
+            tNext[a] += tDelta[a];
+            return true;
+        }
+    }
+
+    /*
+     * Die Traversal-Objekte eines Threads, eines pro Verschachtelungstiefe: ein Primitiv im
+     * Gitter kann über Gruppen wieder ein Gitter enthalten, dessen Durchlauf dann das nächste
+     * Objekt benutzt.
+     */
+    private static final class Traversals {
+        private Traversal[] items = new Traversal[4];
+        private int depth;
+
+        Traversal acquire() {
+            if (depth == items.length) {
+                items = Arrays.copyOf(items, 2 * items.length);
+            }
+            if (items[depth] == null) {
+                items[depth] = new Traversal();
+            }
+            return items[depth++];
+        }
+
+        void release() {
+            depth--;
+        }
+    }
+
+    /*
+     * Merkt sich pro Primitiv die Nummer des Strahls, für den es zuletzt getestet wurde.
+     */
+    private static class Mailbox {
+        final int[] stamps;
+        int ray;
+
+        Mailbox(int size) {
+            stamps = new int[size];
+        }
+
+        int nextRay() {
+            ray++;
+            if (ray == 0) { // Überlauf: alte Einträge löschen
+                Arrays.fill(stamps, 0);
+                ray = 1;
+            }
+            return ray;
+        }
+    }
+}
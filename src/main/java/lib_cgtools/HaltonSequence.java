@@ -0,0 +1,66 @@
+package lib_cgtools;
+
+/*
+ * Halton-Folge: Dimension d ist die Radikalinverse der Sample-Nummer zur d-ten Primzahl.
+ *
+ * Ohne Verwürfelung sind höhere Dimensionen (große Primzahlen) stark korreliert und jedes Pixel
+ * bekäme dieselben Punkte. Deshalb wird jede Ziffer um einen zufälligen Betrag (modulo Basis)
+ * verschoben, der aus Pixel, Dimension und allen vorherigen Ziffern gehasht wird. Das ist eine
+ * verschachtelte Verwürfelung wie bei Owen: Intervalle werden als Ganzes permutiert, die
+ * Schichtung bleibt erhalten, die Punkte sind gleichverteilt.
+ *
+ * Es gibt PRIMES.length Basen; darüber hinaus werden sie mit anderer Verwürfelung wiederholt.
+ */
+public final class HaltonSequence implements SampleSequence {
+
+  private static final int[] PRIMES = primes(128);
+
+  private final long seed;
+
+  public HaltonSequence() {
+    this(0);
+  }
+
+  public HaltonSequence(long seed) {
+    this.seed = seed;
+  }
+
+  @Override
+  public double get(long pixel, long sample, int dimension) {
+    int base = PRIMES[dimension % PRIMES.length];
+    double invBase = 1.0 / base;
+    long prefix = Random.mix(Random.mix(seed ^ pixel) + dimension);
+
+    // Auch die führenden Nullen werden verschoben, sonst lägen alle Werte nahe bei 0
+    double result = 0;
+    double factor = invBase;
+    while (factor > 0x1p-53) {
+      int digit = (int) (sample % base);
+      sample /= base;
+      int shift = (int) Long.remainderUnsigned(prefix, base);
+      result += ((digit + shift) % base) * factor;
+      factor *= invBase;
+      prefix = Random.mix(prefix + digit);
+    }
+    return Math.min(result, Math.nextDown(1.0));
+  }
+
+  // Die ersten count Primzahlen
+  private static int[] primes(int count) {
+    int[] primes = new int[count];
+    int found = 0;
+    for (int n = 2; found < count; n++) {
+      boolean prime = true;
+      for (int i = 0; i < found && primes[i] * primes[i] <= n; i++) {
+        if (n % primes[i] == 0) {
+          prime = false;
+          break;
+        }
+      }
+      if (prime) {
+        primes[found++] = n;
+      }
+    }
+    return primes;
+  }
+}
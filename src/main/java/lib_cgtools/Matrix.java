@@ -42,6 +42,26 @@ public final class Matrix {
     return m;
   }
 
+  // Affine Matrix aus den oberen drei Zeilen, die letzte Zeile ist (0 0 0 1)
+  public static Matrix affine(double m00, double m01, double m02, double m03,
+      double m10, double m11, double m12, double m13,
+      double m20, double m21, double m22, double m23) {
+    Matrix m = new Matrix();
+    m.set(0, 0, m00);
+    m.set(1, 0, m01);
+    m.set(2, 0, m02);
+    m.set(3, 0, m03);
+    m.set(0, 1, m10);
+    m.set(1, 1, m11);
+    m.set(2, 1, m12);
+    m.set(3, 1, m13);
+    m.set(0, 2, m20);
+    m.set(1, 2, m21);
+    m.set(2, 2, m22);
+    m.set(3, 2, m23);
+    return m;
+  }
+
   public static Matrix identity() {
     return identity;
   }
@@ -317,6 +337,22 @@ public final class Matrix {
     return direction(x, y, z);
   }
 
+  // Allokationsfreie Varianten: das Ergebnis wird in out geschrieben.
+
+  public static Vec3 transformPoint(Matrix m, double x, double y, double z, Vec3 out) {
+    return out.set(
+        m.get(0, 0) * x + m.get(1, 0) * y + m.get(2, 0) * z + m.get(3, 0),
+        m.get(0, 1) * x + m.get(1, 1) * y + m.get(2, 1) * z + m.get(3, 1),
+        m.get(0, 2) * x + m.get(1, 2) * y + m.get(2, 2) * z + m.get(3, 2));
+  }
+
+  public static Vec3 transformDirection(Matrix m, double x, double y, double z, Vec3 out) {
+    return out.set(
+        m.get(0, 0) * x + m.get(1, 0) * y + m.get(2, 0) * z,
+        m.get(0, 1) * x + m.get(1, 1) * y + m.get(2, 1) * z,
+        m.get(0, 2) * x + m.get(1, 2) * y + m.get(2, 2) * z);
+  }
+
   public static Matrix transpose(Matrix m) {
     Matrix n = new Matrix();
     for (int c = 0; c != 4; c++) {
@@ -460,6 +496,11 @@ public final class Matrix {
     return true;
   }
 
+  // Element in Zeile row und Spalte column
+  public double element(int row, int column) {
+    return get(column, row);
+  }
+
   private Matrix() {
     makeIdentity();
   }
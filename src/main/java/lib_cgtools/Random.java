@@ -5,6 +5,18 @@ package lib_cgtools;
  * A faster replacement for java.util.Random.
  *
  * <p>Adapted from http://dsiutils.di.unimi.it/docs/it/unimi/dsi/util/SplitMix64Random.html
+ *
+ * <p>Every thread owns its own generator, so {@link #random()} can be called from several
+ * render threads without races or contention. A renderer that needs reproducible images
+ * selects a stream per pixel sample with {@link #select(long, long)}; the stream is derived
+ * purely from (seed, pixel, sample) and does not depend on which thread renders it. All
+ * bounces of a path draw their numbers one after another from the stream of their sample.
+ *
+ * <p>With {@link #useSequence(SampleSequence)} the pixel samples draw from a low-discrepancy
+ * sequence instead (e.g. {@link SobolSequence}, {@link HaltonSequence}): after {@link
+ * #select(long, long)} successive calls of {@link #random()} return dimension 0, 1, 2, ... of
+ * that sample. Calls before the first selection on a thread still use the pseudo random
+ * generator. {@link #align()} skips to the next group of jointly stratified dimensions.
  */
 public class Random extends java.util.Random {
   private static final long serialVersionUID = 1L;
@@ -12,11 +24,19 @@ public class Random extends java.util.Random {
 
   private long x;
 
-  private static Random generator;
+  // Low-discrepancy sequence of the selected pixel sample (null: pseudo random numbers). Only
+  // meaningful for the current render, hence not serialized.
+  private transient SampleSequence selected;
+  private transient long pixel;
+  private transient long sample;
+  private transient int dimension;
 
-  static {
-    generator = new Random();
-  }
+  private static volatile SampleSequence sequence;
+
+  private static volatile long seed = System.nanoTime();
+
+  private static final ThreadLocal<Random> generator =
+      ThreadLocal.withInitial(() -> new Random(staffordMix13(seed + Thread.currentThread().threadId() * PHI)));
 
   /**
    * Produces a pseudo random number from the interval [0,1]. A direct replacement for Math.random()
@@ -24,11 +44,67 @@ public class Random extends java.util.Random {
    * @return A pseudo random number from the interval [0,1].
    */
   public static double random() {
-    return generator.nextDouble();
+    Random g = generator.get();
+    return g.selected == null ? g.nextDouble() : g.selected.get(g.pixel, g.sample, g.dimension++);
+  }
+
+  /**
+   * Makes pixel samples selected from now on draw from the given sequence. {@code null} switches
+   * back to the pseudo random streams.
+   */
+  public static void useSequence(SampleSequence s) {
+    sequence = s;
   }
 
+  /**
+   * The sequence set with {@link #useSequence(SampleSequence)}, or {@code null}.
+   */
+  public static SampleSequence getSequence() {
+    return sequence;
+  }
+
+  /**
+   * Sets the global seed. The calling thread continues with the sequence of {@code new Random(s)}
+   * as before; streams selected afterwards are derived from the new seed.
+   */
   public static void seed(int s) {
-    generator = new Random(s);
+    seed = s;
+    generator.get().x = s;
+  }
+
+  /**
+   * Switches the calling thread's generator to the stream of the given pixel sample. With a
+   * sequence, the sample starts again at dimension 0.
+   */
+  public static void select(long pixel, long sample) {
+    Random g = generator.get();
+    g.x = streamState(seed, pixel, sample);
+    g.selected = sequence;
+    g.pixel = pixel;
+    g.sample = sample;
+    g.dimension = 0;
+  }
+
+  /**
+   * Moves the selected sample to the first dimension of the next group of jointly stratified
+   * dimensions (see {@link SampleSequence#groupSize()}). Call it before drawing numbers that
+   * belong together, e.g. the two coordinates of a direction, so they share one group no matter
+   * how many numbers the path has drawn so far. Does nothing at the start of a group or without
+   * a sequence.
+   */
+  public static void align() {
+    Random g = generator.get();
+    if (g.selected != null) {
+      int size = g.selected.groupSize();
+      g.dimension = (g.dimension + size - 1) / size * size;
+    }
+  }
+
+  // Mixes the stream coordinates into a well distributed SplitMix64 state.
+  private static long streamState(long seed, long pixel, long sample) {
+    long h = staffordMix13(seed + PHI);
+    h = staffordMix13(h ^ (pixel + PHI));
+    return staffordMix13(h ^ (sample + 2 * PHI));
   }
 
   private Random() {
@@ -39,6 +115,11 @@ public class Random extends java.util.Random {
     x = seed;
   }
 
+  // Well distributed 64 bit hash, also used by the sample sequences.
+  static long mix(long z) {
+    return staffordMix13(z);
+  }
+
   private static long staffordMix13(long z) {
     z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
     z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
@@ -0,0 +1,33 @@
+package lib_cgtools;
+
+/*
+ * Quelle für die Zufallszahlen eines Pixel-Samples. Statt unabhängiger Pseudozufallszahlen
+ * liefert eine SampleSequence für die Samples eines Pixels Punkte einer Folge mit geringer
+ * Diskrepanz (Quasi-Monte-Carlo): die Samples füllen jede Dimension und die niedrigen
+ * Dimensionen gemeinsam gleichmäßiger aus, das Rauschen sinkt bei gleicher Anzahl.
+ *
+ * Aktiviert wird eine Folge mit Random.useSequence; danach liefert Random.random() nach
+ * Random.select(pixel, sample) nacheinander die Dimensionen 0, 1, 2, ... dieses Samples.
+ * Image.supersample benutzt die Dimensionen 0 und 1 für die Position im Pixel, alle weiteren
+ * verbrauchen Kamera, Materialien und Raytracer in der Reihenfolge ihrer Aufrufe.
+ *
+ * get darf keinen Zustand haben: das Ergebnis hängt nur von den Argumenten ab. Dadurch ist
+ * eine Folge ohne Synchronisation von allen Render-Threads aus benutzbar und jedes Pixel
+ * unabhängig vom rendernden Thread reproduzierbar.
+ */
+public interface SampleSequence {
+
+  /*
+   * Wert der Dimension dimension des Samples sample im Pixel pixel, aus [0, 1).
+   */
+  public double get(long pixel, long sample, int dimension);
+
+  /*
+   * Anzahl der Dimensionen, die gemeinsam geschichtet sind (SobolSequence: 4). Random.align
+   * springt zum Anfang der nächsten solchen Gruppe, damit Zahlen, die zusammengehören, nicht auf
+   * zwei Gruppen verteilt werden. Folgen ohne Gruppen liefern 1.
+   */
+  public default int groupSize() {
+    return 1;
+  }
+}
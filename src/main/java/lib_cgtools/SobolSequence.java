@@ -0,0 +1,103 @@
+package lib_cgtools;
+
+/*
+ * Sobol-Folge mit Owen-Verwürfelung, pro Pixel verschieden (Burley, "Practical Hash-based Owen
+ * Scrambling", JCGT 2020).
+ *
+ * - Die ersten vier Sobol-Dimensionen werden aus den Richtungszahlen von Joe und Kuo gebildet.
+ * - Jeder Wert wird mit einer hash-basierten Owen-Verwürfelung umgeordnet. Sie vertauscht rekursiv
+ *   Hälften von Intervallen, dabei bleibt die Schichtung der Folge erhalten, die Punkte sind aber
+ *   gleichverteilt und zwischen Pixeln unkorreliert.
+ * - Weitere Dimensionen werden in Vierergruppen aufgefüllt ("padding"): jede Gruppe benutzt
+ *   wieder die vier Dimensionen, aber mit einer eigenen Verwürfelung der Sample-Nummer. Innerhalb
+ *   einer Gruppe sind die Dimensionen also gemeinsam geschichtet, Gruppen sind unabhängig.
+ *
+ * Am besten wirkt die Folge bei einer Zweierpotenz als Sample-Anzahl pro Pixel.
+ */
+public final class SobolSequence implements SampleSequence {
+
+  // Erzeugermatrizen der vier Dimensionen, eine Spalte pro Bit der Sample-Nummer
+  private static final int[][] MATRICES = new int[4][32];
+
+  static {
+    // Joe-Kuo (new-joe-kuo-6.21201) für die Dimensionen 2 bis 4: Grad s, Koeffizienten a, m_i
+    int[] degree = { 1, 2, 3 };
+    int[] coefficients = { 0, 1, 1 };
+    int[][] initial = { { 1 }, { 1, 3 }, { 1, 3, 1 } };
+
+    for (int bit = 0; bit < 32; bit++) {
+      MATRICES[0][bit] = 1 << (31 - bit);  // Van-der-Corput-Folge
+    }
+    for (int d = 0; d < 3; d++) {
+      int s = degree[d];
+      int a = coefficients[d];
+      int[] v = MATRICES[d + 1];
+      for (int i = 0; i < 32; i++) {
+        if (i < s) {
+          v[i] = initial[d][i] << (31 - i);
+        } else {
+          v[i] = v[i - s] ^ (v[i - s] >>> s);
+          for (int k = 1; k < s; k++) {
+            v[i] ^= ((a >>> (s - 1 - k)) & 1) * v[i - k];
+          }
+        }
+      }
+    }
+  }
+
+  private final long seed;
+
+  public SobolSequence() {
+    this(0);
+  }
+
+  public SobolSequence(long seed) {
+    this.seed = seed;
+  }
+
+  @Override
+  public double get(long pixel, long sample, int dimension) {
+    int groupSeed = (int) Random.mix(Random.mix(seed ^ pixel) + (dimension >>> 2));
+    int index = nestedUniformScramble((int) sample, groupSeed);
+    int dim = dimension & 3;
+    int x = nestedUniformScramble(sobol(index, dim), hashCombine(groupSeed, dim));
+    return (x & 0xFFFFFFFFL) * 0x1p-32;
+  }
+
+  @Override
+  public int groupSize() {
+    return 4;
+  }
+
+  private static int sobol(int index, int dim) {
+    int x = 0;
+    for (int bit = 0; index != 0; index >>>= 1, bit++) {
+      if ((index & 1) != 0) {
+        x ^= MATRICES[dim][bit];
+      }
+    }
+    return x;
+  }
+
+  /*
+   * Owen-Verwürfelung in Basis 2: die Laine-Karras-Permutation verändert jedes Bit nur abhängig
+   * von den niedrigeren Bits, nach dem Umdrehen der Bitreihenfolge also abhängig von allen
+   * höherwertigen Ziffern.
+   */
+  private static int nestedUniformScramble(int x, int seed) {
+    return Integer.reverse(laineKarras(Integer.reverse(x), seed));
+  }
+
+  private static int laineKarras(int x, int seed) {
+    x += seed;
+    x ^= x * 0x6c50b47c;
+    x ^= x * 0xb82f1e52;
+    x ^= x * 0xc7afe638;
+    x ^= x * 0x8d22f6e6;
+    return x;
+  }
+
+  private static int hashCombine(int seed, int v) {
+    return seed ^ (v + 0x9e3779b9 + (seed << 6) + (seed >>> 2));
+  }
+}
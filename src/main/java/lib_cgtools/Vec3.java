@@ -0,0 +1,139 @@
+package lib_cgtools;
+
+/*
+ * Veränderlicher 3er-Vektor als Zwischenspeicher (Akkumulator) für heiße Schleifen.
+ *
+ * Die Funktionen in Vector erzeugen für jedes Ergebnis ein neues Point-, Direction- oder
+ * Color-Objekt. Wo pro Strahl viele Zwischenergebnisse anfallen, kann stattdessen ein Vec3
+ * wiederverwendet werden: alle Methoden ändern das Objekt selbst und geben es zurück, damit
+ * sich Aufrufe verketten lassen. Erst das Endergebnis wird mit toColor(), toPoint() oder
+ * toDirection() in einen Record umgewandelt.
+ *
+ * Ein Vec3 ist nicht thread-sicher und sollte lokal in einer Methode verwendet werden.
+ */
+public final class Vec3 {
+
+  public double x, y, z;
+
+  public Vec3() {
+  }
+
+  public Vec3(double x, double y, double z) {
+    this.x = x;
+    this.y = y;
+    this.z = z;
+  }
+
+  public Vec3 set(double x, double y, double z) {
+    this.x = x;
+    this.y = y;
+    this.z = z;
+    return this;
+  }
+
+  public Vec3 set(Color c) {
+    return set(c.r(), c.g(), c.b());
+  }
+
+  public Vec3 set(Point p) {
+    return set(p.x(), p.y(), p.z());
+  }
+
+  public Vec3 set(Direction d) {
+    return set(d.x(), d.y(), d.z());
+  }
+
+  public Vec3 add(double x, double y, double z) {
+    this.x += x;
+    this.y += y;
+    this.z += z;
+    return this;
+  }
+
+  public Vec3 add(Color c) {
+    return add(c.r(), c.g(), c.b());
+  }
+
+  public Vec3 add(Direction d) {
+    return add(d.x(), d.y(), d.z());
+  }
+
+  public Vec3 add(Vec3 v) {
+    return add(v.x, v.y, v.z);
+  }
+
+  // this += s * c
+  public Vec3 addScaled(double s, Color c) {
+    return add(s * c.r(), s * c.g(), s * c.b());
+  }
+
+  // this += s * d
+  public Vec3 addScaled(double s, Direction d) {
+    return add(s * d.x(), s * d.y(), s * d.z());
+  }
+
+  // this += a * b (komponentenweise)
+  public Vec3 addProduct(Color a, Color b) {
+    return add(a.r() * b.r(), a.g() * b.g(), a.b() * b.b());
+  }
+
+  public Vec3 subtract(double x, double y, double z) {
+    return add(-x, -y, -z);
+  }
+
+  public Vec3 subtract(Point p) {
+    return subtract(p.x(), p.y(), p.z());
+  }
+
+  public Vec3 scale(double s) {
+    x *= s;
+    y *= s;
+    z *= s;
+    return this;
+  }
+
+  // Komponentenweise Multiplikation (z.B. Farbe mal Farbe)
+  public Vec3 multiply(Color c) {
+    x *= c.r();
+    y *= c.g();
+    z *= c.b();
+    return this;
+  }
+
+  public double dot(double x, double y, double z) {
+    return this.x * x + this.y * y + this.z * z;
+  }
+
+  public double dot(Direction d) {
+    return dot(d.x(), d.y(), d.z());
+  }
+
+  public double squaredLength() {
+    return x * x + y * y + z * z;
+  }
+
+  public double length() {
+    return Math.sqrt(squaredLength());
+  }
+
+  public Vec3 normalize() {
+    return scale(1.0 / length());
+  }
+
+  public Color toColor() {
+    return new Color(x, y, z);
+  }
+
+  public Point toPoint() {
+    return new Point(x, y, z);
+  }
+
+  public Direction toDirection() {
+    return new Direction(x, y, z);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("(Vec3: %.2f %.2f %.2f)", x, y, z);
+  }
+}
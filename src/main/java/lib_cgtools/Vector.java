@@ -23,6 +23,12 @@ public final class Vector {
     return color(i, i, i);
   }
 
+  // Die Überladungen mit fester Anzahl an Argumenten vermeiden das leere Varargs-Array pro Aufruf.
+
+  public static Direction add(Direction a, Direction b) {
+    return direction(a.x() + b.x(), a.y() + b.y(), a.z() + b.z());
+  }
+
   public static Direction add(Direction a, Direction b, Direction... vs) {
     Direction r = direction(a.x() + b.x(), a.y() + b.y(), a.z() + b.z());
     for (Direction v : vs) {
@@ -31,6 +37,10 @@ public final class Vector {
     return r;
   }
 
+  public static Point add(Point a, Point b) {
+    return point(a.x() + b.x(), a.y() + b.y(), a.z() + b.z());
+  }
+
   public static Point add(Point a, Point b, Point... vs) {
     Point r = point(a.x() + b.x(), a.y() + b.y(), a.z() + b.z());
     for (Point v : vs) {
@@ -39,6 +49,10 @@ public final class Vector {
     return r;
   }
 
+  public static Point add(Point a, Direction b) {
+    return point(a.x() + b.x(), a.y() + b.y(), a.z() + b.z());
+  }
+
   public static Point add(Point a, Direction b, Direction... vs) {
     Point r = new Point(a.x() + b.x(), a.y() + b.y(), a.z() + b.z());
     for (Direction v : vs) {
@@ -51,6 +65,10 @@ public final class Vector {
     return point(a.x() + b.x(), a.y() + b.y(), a.z() + b.z());
   }
 
+  public static Direction subtract(Direction a, Direction b) {
+    return direction(a.x() - b.x(), a.y() - b.y(), a.z() - b.z());
+  }
+
   public static Direction subtract(Direction a, Direction b, Direction... vs) {
     Direction r = direction(a.x() - b.x(), a.y() - b.y(), a.z() - b.z());
     for (Direction v : vs) {
@@ -130,7 +148,8 @@ public final class Vector {
   }
 
   public static Direction normalize(Direction a) {
-    return divide(a, length(a));
+    double l = Math.sqrt(a.x() * a.x() + a.y() * a.y() + a.z() * a.z());
+    return direction(a.x() / l, a.y() / l, a.z() / l);
   }
 
   public static Point mod(Point a, Point b) {
@@ -153,6 +172,18 @@ public final class Vector {
     return color(a.x(), a.y(), a.z());
   }
 
+  public static Color add(Color a, Color b) {
+    return color(a.r() + b.r(), a.g() + b.g(), a.b() + b.b());
+  }
+
+  public static Color add(Color a, Color b, Color c) {
+    return color(a.r() + b.r() + c.r(), a.g() + b.g() + c.g(), a.b() + b.b() + c.b());
+  }
+
+  public static Color add(Color a, Color b, Color c, Color d) {
+    return color(a.r() + b.r() + c.r() + d.r(), a.g() + b.g() + c.g() + d.g(), a.b() + b.b() + c.b() + d.b());
+  }
+
   public static Color add(Color a, Color b, Color... vs) {
     Color r = color(a.r() + b.r(), a.g() + b.g(), a.b() + b.b());
     for (Color v : vs) {
@@ -161,6 +192,10 @@ public final class Vector {
     return r;
   }
 
+  public static Color subtract(Color a, Color b) {
+    return color(a.r() - b.r(), a.g() - b.g(), a.b() - b.b());
+  }
+
   public static Color subtract(Color a, Color b, Color... vs) {
     Color r = color(a.r() - b.r(), a.g() - b.g(), a.b() - b.b());
     for (Color v : vs) {